@@ -0,0 +1,39 @@
+package com.example.mazegame.helpers;
+
+import android.graphics.RectF;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.WallIndex;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GeometryHelper {
+
+    // стены в корзинах индекса видимости примерно по ячейке
+    private static final float CULLING_BUCKET_CELLS = 1f;
+
+    public static List<RectF> toRects(List<Box> boxes) {
+        List<RectF> rects = new ArrayList<>(boxes.size());
+        for(Box box : boxes) rects.add(new RectF(box.left, box.top, box.right, box.bottom));
+        return rects;
+    }
+
+    public static List<Box> toBoxes(List<RectF> rects) {
+        List<Box> boxes = new ArrayList<>(rects.size());
+        for(RectF rect : rects) boxes.add(new Box(rect.left, rect.top, rect.right, rect.bottom));
+        return boxes;
+    }
+
+    /** Индекс, по которому view рисует только видимые стены; строится вместе со стенами, не в главном потоке. */
+    public static WallIndex toCullingIndex(List<Box> walls, int cellSize) {
+        return new WallIndex(walls, cellSize * CULLING_BUCKET_CELLS);
+    }
+
+    public static Box toBox(RectF rect, Box out) {
+        return out.set(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    public static RectF toRect(Box box, RectF out) {
+        out.set(box.left, box.top, box.right, box.bottom);
+        return out;
+    }
+}
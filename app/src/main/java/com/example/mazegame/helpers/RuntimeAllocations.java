@@ -0,0 +1,27 @@
+package com.example.mazegame.helpers;
+
+import android.os.Build;
+import android.os.Debug;
+import com.example.mazegame.core.metrics.Metrics;
+
+/**
+ * Сколько байт выделил ART с запуска процесса. Статистика доступна с API 23,
+ * на более старых версиях метрика выделений за кадр просто не собирается.
+ */
+public class RuntimeAllocations implements Metrics.AllocationSource {
+
+    private static final String BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    @Override
+    public long allocatedBytes() {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return -1;
+        String value = Debug.getRuntimeStat(BYTES_ALLOCATED);
+        if(value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+}
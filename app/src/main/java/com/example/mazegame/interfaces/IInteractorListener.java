@@ -1,11 +1,16 @@
 package com.example.mazegame.interfaces;
 
 import android.graphics.RectF;
+import com.example.mazegame.core.geometry.WallIndex;
 import java.util.List;
 
 public interface IInteractorListener {
     void onSizesReady(int w, int h, int marginStart, int marginTop);
-    void onMazeReady(int cols, int rows, int cellSize, List<RectF> walls);
+    /** @param wallIndex индекс видимости по тем же стенам (GeometryHelper.toCullingIndex) */
+    void onMazeReady(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex);
+    void onWallsChanged(List<RectF> walls, WallIndex wallIndex);
     void onWallTouch();
     void onFinish();
+    /** Гонка: центры остальных игроков (centers[2 * i], centers[2 * i + 1]) по данным сервера. */
+    void onRivalsMoved(float[] centers, int count);
 }
@@ -0,0 +1,23 @@
+package com.example.mazegame.interfaces;
+
+import android.graphics.RectF;
+import androidx.annotation.DrawableRes;
+import com.example.mazegame.core.geometry.WallIndex;
+import com.example.mazegame.ui.customviews.MazeView;
+import java.util.List;
+
+/** Отрисовка лабиринта: обычная view в главном потоке или surface со своим потоком отрисовки. */
+public interface IMazeView {
+    IMazeView setDrawables(@DrawableRes int playerRes, @DrawableRes int finishRes);
+    IMazeView setMoveListener(MazeView.OnMoveListener listener);
+    IMazeView enableTrail();
+    /** @param wallIndex индекс видимости по walls; view только читает его и строить его не должна */
+    void start(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex);
+    void startEndless(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex);
+    void updateWalls(List<RectF> walls, WallIndex wallIndex);
+    void restart();
+    void clear();
+    void stop();
+    /** Соперники в гонке: centers не меняется после передачи, count = 0 убирает всех. */
+    void setRivals(float[] centers, int count);
+}
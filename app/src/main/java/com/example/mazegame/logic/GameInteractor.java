@@ -1,21 +1,90 @@
 package com.example.mazegame.logic;
 
 import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.mazegame.core.EndlessMaze;
+import com.example.mazegame.core.Maze;
+import com.example.mazegame.core.MazeBuilder;
+import com.example.mazegame.core.MazeEngine;
+import com.example.mazegame.core.generation.BacktrackerGenerator;
+import com.example.mazegame.core.generation.FastRandom;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.WallIndex;
+import com.example.mazegame.core.io.LevelPack;
+import com.example.mazegame.core.io.MazeFormat;
+import com.example.mazegame.core.metrics.Metrics;
+import com.example.mazegame.core.race.RaceClient;
+import com.example.mazegame.core.race.RaceProtocol;
+import com.example.mazegame.core.race.RaceServer;
+import com.example.mazegame.core.solving.CandidateSearch;
+import com.example.mazegame.core.solving.Difficulty;
+import com.example.mazegame.helpers.GeometryHelper;
 import com.example.mazegame.interfaces.IInteractorListener;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.util.List;
-import java.util.Random;
-import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class GameInteractor {
 
-    private IInteractorListener listener;
+    private static final String TAG = GameInteractor.class.getSimpleName();
+    // сколько полос бесконечного лабиринта держать ниже и выше полосы с player'ом
+    private static final int ENDLESS_BANDS_AHEAD = 1;
+    private static final int ENDLESS_BANDS_BEHIND = 1;
+    // как часто поток гонки отправляет накопленные ходы, если от сервера ничего не приходит
+    private static final long RACE_FLUSH_MILLIS = 16;
+    private static final float[] NO_RIVALS = new float[0];
 
-    private final Random random = new Random();
-    private boolean gameFinished;
-    private List<RectF> walls;
+    private IInteractorListener listener;
 
+    // генерация идет в одном фоновом потоке, результат возвращается в главный
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MazeBuilder builder = new MazeBuilder();
+    private final MazeEngine engine = new MazeEngine();
+    // кандидаты подбора по сложности считаются на всех ядрах
+    private final CandidateSearch search = new CandidateSearch(ForkJoinPool.commonPool());
+    // базовые seed'ы для подбора; используется только в главном потоке
+    private final FastRandom searchSeeds = new FastRandom();
+    private volatile String generatorName = new BacktrackerGenerator().getName();
+    // буферы для перевода RectF из view в геометрию движка без выделения памяти на каждый ход
+    private final Box playerBox = new Box();
+    private final Box finishBox = new Box();
+    // не null, пока идет бесконечный режим
+    private EndlessMaze endless;
+    // полосы бесконечного лабиринта догенерируются в executor'е; до ответа endless не трогаем
+    private boolean endlessUpdating;
+    private long seed;
+    // меньше ячейки не делаем: большой лабиринт тогда не влезает в экран, и его показывает камера view
+    private volatile int minCellSize;
+    // набор готовых уровней; открывается в фоне, до этого уровни генерируются
+    private volatile LevelPack levelPack;
+    private int levelIndex;
+
+    private Future<?> pendingTask;
+    private Future<PreparedMaze> prefetchTask;
+    private MazeSpec prefetchSpec;
+    // увеличивается при каждом новом запросе; результаты устаревших запросов отбрасываются
+    private int requestId;
+
+    // гонка: сеть в своем потоке, главный только копит ходы в raceClient
+    private final ExecutorService raceExecutor = Executors.newSingleThreadExecutor();
+    private Future<?> raceTask;
+    // не null, пока идет гонка и ее лабиринт уже показан; используется только в главном потоке
+    private RaceClient raceClient;
 
     //region ******************* OPTIONS ***********************************************************
 
@@ -23,6 +92,17 @@ public class GameInteractor {
         this.listener = listener;
     }
 
+    /** Алгоритм для следующих лабиринтов (по умолчанию - рекурсивный возврат). */
+    public void setGenerator(MazeGenerator generator) {
+        builder.setGenerator(generator);
+        generatorName = generator.getName();
+    }
+
+    /** Минимальный размер ячейки в пикселях; по умолчанию лабиринт всегда сжимается до размеров экрана. */
+    public void setMinCellSize(int minCellSize) {
+        this.minCellSize = minCellSize;
+    }
+
     //endregion OPTIONS
 
     //region ******************* HANDLERS **********************************************************
@@ -43,160 +123,525 @@ public class GameInteractor {
     }
 
     public void createMaze(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
-        int cellWidth = playgroundWidth / cols;
-        int cellHeight = playgroundHeight / rows;
-        int cellSize = Math.min(cellWidth, cellHeight);
+        endless = null;
+        applyMaze(buildMaze(new MazeSpec(cols, rows,
+            getCellSize(cols, rows, playgroundWidth, playgroundHeight), wallThickness, null)));
+    }
 
-        walls = generateMaze(cols, rows, wallThickness, cellSize);
-        listener.onMazeReady(cols, rows, cellSize, walls);
+    /**
+     * То же, что createMaze, но генерация идет в фоновом потоке, а onMazeReady вызывается
+     * в главном. Предыдущий незавершенный запрос отменяется. Если подходящий лабиринт
+     * уже подготовлен через prefetchMaze, он отдается сразу.
+     */
+    public void createMazeAsync(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
+        createMazeAsync(new MazeSpec(cols, rows,
+            getCellSize(cols, rows, playgroundWidth, playgroundHeight), wallThickness, null));
     }
 
-    public void onMove(RectF playerRect, RectF finishRect) {
-        if(gameFinished) return;
+    /** Воспроизводит лабиринт по seed'у (например, полученному от другого игрока через getSeed). */
+    public void createMazeAsync(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness,
+                                long seed) {
+        createMazeAsync(new MazeSpec(cols, rows,
+            getCellSize(cols, rows, playgroundWidth, playgroundHeight), wallThickness, seed));
+    }
+
+    private void createMazeAsync(MazeSpec spec) {
+        cancel();
+        endless = null;
+        int id = requestId;
+
+        Future<PreparedMaze> prefetched = takePrefetched(spec);
+        if(prefetched != null && prefetched.isDone()) {
+            PreparedMaze maze = getDone(prefetched);
+            if(maze != null) {
+                applyMaze(maze);
+                return;
+            }
+            prefetched = null;
+        }
+
+        // executor однопоточный, поэтому незавершенный prefetch к этому моменту уже будет готов
+        Future<PreparedMaze> source = prefetched;
+        pendingTask = executor.submit(() -> {
+            PreparedMaze maze = source != null ? getDone(source) : null;
+            if(maze == null) maze = buildMaze(spec);
+            PreparedMaze result = maze;
+            mainHandler.post(() -> {
+                if(id == requestId) applyMaze(result);
+            });
+        });
+    }
+
+    /**
+     * Подбор по сложности: за budgetMillis параллельно оцениваются лабиринты cols x rows
+     * с разными seed'ами, и строится ближайший к target. Его seed (getSeed) воспроизводит
+     * тот же лабиринт без повторного подбора.
+     */
+    public void createMazeAsync(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness,
+                                Difficulty target, long budgetMillis) {
+        cancel();
+        endless = null;
+        int id = requestId;
+        int cellSize = getCellSize(cols, rows, playgroundWidth, playgroundHeight);
+        long baseSeed = searchSeeds.nextLong();
+        String generator = generatorName;
+        pendingTask = executor.submit(() -> {
+            CandidateSearch.Result best = search.search(generator, cols, rows, target, baseSeed,
+                TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+            Log.d(TAG, "difficulty search: " + best);
+            PreparedMaze maze = buildMaze(new MazeSpec(cols, rows, cellSize, wallThickness, best.getSeed()));
+            mainHandler.post(() -> {
+                if(id == requestId) applyMaze(maze);
+            });
+        });
+    }
+
+    /**
+     * Бесконечный режим: лабиринт шириной cols уходит вниз без конца, на экране видно rows строк.
+     * Полосы по rows строк догенерируются в фоне, как только player переходит в следующую полосу
+     * (ниже него всегда есть уже готовая), и при смене набора полос вызывается onWallsChanged.
+     */
+    public void createEndlessMaze(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
+        cancel();
+        int cellSize = getCellSize(cols, rows, playgroundWidth, playgroundHeight);
+        endless = new EndlessMaze(cols, rows, cellSize, wallThickness, ENDLESS_BANDS_AHEAD, ENDLESS_BANDS_BEHIND);
+        engine.setWalls(endless.getWallIndex());
+        engine.restart();
+        if(listener != null) listener.onMazeReady(cols, rows, cellSize, GeometryHelper.toRects(endless.getWalls()),
+            GeometryHelper.toCullingIndex(endless.getWalls(), cellSize));
+    }
+
+    /**
+     * Открывает набор уровней в фоновом потоке. Если файла еще нет, он сначала генерируется:
+     * count уровней cols x rows с seed'ами 0..count-1, поэтому у всех игроков они одинаковые.
+     */
+    public void openLevelPack(File file, int cols, int rows, int count) {
+        executor.submit(() -> {
+            try {
+                if(!file.exists()) writeLevelPack(file, cols, rows, count);
+                try {
+                    levelPack = LevelPack.open(file);
+                }
+                catch(IllegalArgumentException e) {
+                    // испорченный файл сам не исправится - строим набор заново
+                    Log.w(TAG, "level pack is corrupt, rebuilding", e);
+                    writeLevelPack(file, cols, rows, count);
+                    levelPack = LevelPack.open(file);
+                }
+            }
+            catch(IOException | IllegalArgumentException e) {
+                Log.w(TAG, "level pack is unavailable", e);
+            }
+        });
+    }
 
-        boolean touchedWall = isWallTouched(playerRect);
-        boolean reachedFinish = !touchedWall && isFinishReached(playerRect, finishRect);
+    /**
+     * Гонка на этом устройстве: запускает сервер на port с лабиринтом cols x rows по случайному
+     * seed'у и подключается к нему сам, как joinRace. Остальные подключаются через joinRace.
+     */
+    public void hostRace(int port, int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
+        int cellSize = getCellSize(cols, rows, playgroundWidth, playgroundHeight);
+        long raceSeed = searchSeeds.nextLong();
+        int id = prepareRace();
+        raceTask = raceExecutor.submit(() -> {
+            RaceServer server;
+            try {
+                server = new RaceServer(new InetSocketAddress(port), cols, rows, cellSize, wallThickness,
+                    // сервер проверяет стены для того же квадрата, что рисует view
+                    cellSize * Maze.PLAYER_PERCENT_TO_CELL, generatorName, raceSeed);
+            }
+            catch(IOException e) {
+                Log.w(TAG, "race server failed to start", e);
+                return;
+            }
+            new Thread(server, "race-server").start();
+            runRace(new InetSocketAddress("127.0.0.1", server.getPort()), server, id);
+        });
+    }
+
+    /**
+     * Подключается к гонке: лабиринт (размеры, ячейка и seed) приходит от сервера, onMazeReady
+     * вызывается, когда он построен. Ходы player'а уходят на сервер, положения соперников
+     * приходят в onRivalsMoved, а касание стены по проверке сервера - в onWallTouch.
+     */
+    public void joinRace(String host, int port) {
+        int id = prepareRace();
+        raceTask = raceExecutor.submit(() -> runRace(new InetSocketAddress(host, port), null, id));
+    }
+
+    public boolean hasLevelPack() {
+        return levelPack != null;
+    }
 
-        if(touchedWall || reachedFinish) {
-            gameFinished = true;
-            if(reachedFinish) listener.onFinish();
-            else listener.onWallTouch();
+    /**
+     * Следующий уровень из набора (по кругу): декодируется из отображенного файла в фоне,
+     * onMazeReady вызывается в главном потоке. Пока набор не открыт, лабиринт cols x rows
+     * генерируется как в createMazeAsync.
+     */
+    public void createNextLevelAsync(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
+        LevelPack pack = levelPack;
+        if(pack == null || pack.size() == 0) {
+            createMazeAsync(cols, rows, playgroundWidth, playgroundHeight, wallThickness);
+            return;
         }
+
+        cancel();
+        endless = null;
+        int id = requestId;
+        int level = levelIndex++ % pack.size();
+        pendingTask = executor.submit(() -> {
+            PreparedMaze maze;
+            try {
+                maze = loadLevel(pack, level, playgroundWidth, playgroundHeight, wallThickness);
+            }
+            catch(IllegalArgumentException e) {
+                Log.w(TAG, "level " + level + " is corrupted", e);
+                maze = buildMaze(new MazeSpec(cols, rows,
+                    getCellSize(cols, rows, playgroundWidth, playgroundHeight), wallThickness, null));
+            }
+            PreparedMaze result = maze;
+            mainHandler.post(() -> {
+                if(id == requestId) applyMaze(result);
+            });
+        });
+    }
+
+    /** Заранее генерирует следующий лабиринт в фоне, пока играется текущий. */
+    public void prefetchMaze(int cols, int rows, int playgroundWidth, int playgroundHeight, int wallThickness) {
+        MazeSpec spec = new MazeSpec(cols, rows,
+            getCellSize(cols, rows, playgroundWidth, playgroundHeight), wallThickness, null);
+        if(prefetchTask != null && spec.accepts(prefetchSpec)) return;
+        if(prefetchTask != null) prefetchTask.cancel(true);
+
+        prefetchSpec = spec;
+        prefetchTask = executor.submit(() -> buildMaze(spec));
+    }
+
+    /**
+     * Отменяет незавершенную генерацию и выходит из гонки (с ней останавливается и свой сервер);
+     * подготовленный заранее лабиринт сохраняется.
+     */
+    public void cancel() {
+        requestId++;
+        if(pendingTask != null) pendingTask.cancel(true);
+        pendingTask = null;
+        if(raceTask != null) raceTask.cancel(true);
+        raceTask = null;
+        raceClient = null;
+    }
+
+    /** Останавливает фоновый поток; вызывается при уничтожении экрана. */
+    public void release() {
+        cancel();
+        if(prefetchTask != null) prefetchTask.cancel(true);
+        prefetchTask = null;
+        executor.shutdownNow();
+        raceExecutor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+        listener = null;
+    }
+
+    /**
+     * Проверяет путь player'а от прошлого положения до playerRect. При касании стены playerRect
+     * переносится в точку контакта, чтобы быстрый свайп не "перепрыгивал" тонкие стены.
+     */
+    public void onMove(RectF playerRect, RectF finishRect) {
+        onMove(playerRect, null, 0, finishRect);
+    }
+
+    /**
+     * Пакетная версия для всех точек одного MotionEvent: player идет от playerRect через
+     * центры (centers[2 * i], centers[2 * i + 1]). Стены вокруг всего пути собираются
+     * одним запросом к индексу, затем по ним проверяется каждый отрезок.
+     * @return сколько точек пройдено без касания; playerRect остается в последней из них
+     *         или в точке контакта со стеной
+     */
+    public int onMove(RectF playerRect, float[] centers, int count, RectF finishRect) {
+        long start = Metrics.start();
+        int result = engine.move(GeometryHelper.toBox(playerRect, playerBox), centers, count,
+            GeometryHelper.toBox(finishRect, finishBox));
+        GeometryHelper.toRect(playerBox, playerRect);
+        if(endless != null && !endlessUpdating && endless.needsUpdate(playerBox.centerY())) updateEndless();
+        Metrics.MOVE.stop(start);
+        if(start != 0) {
+            Metrics.WALL_TESTS.record(engine.getWallTests());
+            Metrics.FAST_PATH.record(engine.isLastMoveFast() ? 1 : 0);
+        }
+
+        // точку касания стены тоже отправляем: сервер должен сам увидеть то же касание
+        if(raceClient != null && count > 0) sendRaceMove(centers, Math.min(count, engine.getReached() + 1));
+
+        if(result == MazeEngine.MOVE_FINISH) listener.onFinish();
+        else if(result == MazeEngine.MOVE_WALL) listener.onWallTouch();
+        return engine.getReached();
     }
 
     public void restart() {
-        gameFinished = false;
+        engine.restart();
+        RaceClient client = raceClient;
+        if(client == null) return;
+        try {
+            client.restart();
+        }
+        catch(IOException e) {
+            Log.w(TAG, "race restart failed", e);
+        }
+    }
+
+    /**
+     * Кратчайший путь текущего лабиринта (ячейки col + row * cols) - для подсказок и очков.
+     * Первый вызов ищет путь в потоке вызывающего; для больших лабиринтов - не из UI потока.
+     */
+    public int[] getSolution() {
+        Maze maze = engine.getMaze();
+        return maze != null ? maze.getSolution() : new int[0];
+    }
+
+    /** Доля ходов, прошедших внутри свободной области без проверки стен. */
+    public float getFastMoveFraction() {
+        return engine.getFastMoveFraction();
+    }
+
+    /** Seed текущего лабиринта: по нему createMazeAsync построит такой же. */
+    public long getSeed() {
+        return seed;
     }
 
     public void finish() {
-        gameFinished = true;
+        engine.finish();
+    }
+
+    /** Записывает сводку метрик в file в фоновом потоке (если метрики включены). */
+    public void exportMetrics(File file) {
+        if(!Metrics.isEnabled() || executor.isShutdown()) return;
+        executor.submit(() -> {
+            try {
+                Metrics.export(file);
+            }
+            catch(IOException e) {
+                Log.w(TAG, "metrics export failed", e);
+            }
+        });
     }
 
     //endregion HANDLERS
 
     //region ******************* HELPERS ***********************************************************
 
-    private LinkedList<RectF> generateMaze(int cols, int rows, int wallThickness, int cellSize) {
-        // создаем матрицу ячеек
-        Cell[][] cells = new Cell[cols][rows];
-        for(int i = 0; i < cols; i++)
-            for(int j = 0; j < rows; j++)
-                cells[i][j] = new Cell(i, j);
-
-        Stack<Cell> stack = new Stack<>();
-        Cell currentCell = cells[0][0];
-        // проходим по всем ячейкам и генерируем лабиринт. Для каждой ячейки берем случайного
-        // "соседа" и убираем стену между этими ячейками. Каждая ячейка может быть "соседом" только
-        // один раз, чтобы не было лишних ветвлений. Если зашли в тупик (у ячейки нет необработанных
-        // соседей), возвращаемся обратно по стеку. Как только найдем ячейку, у которой есть
-        // необработанный сосед, продолжим обработку ячеек по тому же принципу и таким образом
-        // начнем создавать очередную ветку лабиринта. Эта логика будет повторяться, пока не
-        // останется необработанных ячеек (из очереднего тупика вернемся к первой ячейке,
-        // и стек полностью очистится).
-        do {
-            currentCell.visited = true;
-            // получаем соседнюю ячейку, которую еще не успели обработать
-            Cell nextCell = getPendingNeighbour(cells, currentCell, cols, rows);
-            if(nextCell != null) {
-                // удаляем стены между соседними ячейками
-                removeWall(currentCell, nextCell);
-                stack.push(currentCell);
-                currentCell = nextCell;
-            }
-            else currentCell = stack.pop();
-        } while(!stack.empty());
+    private static void writeLevelPack(File file, int cols, int rows, int count) throws IOException {
+        long[] seeds = new long[count];
+        for(int i = 0; i < count; i++) seeds[i] = i;
+        LevelPack.write(file, new BacktrackerGenerator(), cols, rows, seeds);
+    }
 
-        // превращаем карту стен в rect'ы
-        return createWalls(cells, cols, rows, wallThickness, cellSize);
+    private int getCellSize(int cols, int rows, int playgroundWidth, int playgroundHeight) {
+        int cellWidth = playgroundWidth / cols;
+        int cellHeight = playgroundHeight / rows;
+        return Math.max(minCellSize, Math.min(cellWidth, cellHeight));
     }
 
-    private Cell getPendingNeighbour(Cell[][] cells, Cell cell, int cols, int rows) {
-        Cell leftCell = cell.col > 0 ? cells[cell.col - 1][cell.row] : null;
-        Cell topCell = cell.row > 0 ? cells[cell.col][cell.row - 1] : null;
-        Cell rightCell = cell.col < cols - 1 ? cells[cell.col + 1][cell.row] : null;
-        Cell bottomCell = cell.row < rows - 1 ? cells[cell.col][cell.row + 1] : null;
+    /** Отменяет прочие запросы лабиринта; результат гонки принимается только с этим id. */
+    private int prepareRace() {
+        cancel();
+        endless = null;
+        return requestId;
+    }
 
-        List<Cell> pendingNeighbours = new ArrayList<>();
-        if(leftCell != null && !leftCell.visited) pendingNeighbours.add(leftCell);
-        if(topCell != null && !topCell.visited) pendingNeighbours.add(topCell);
-        if(rightCell != null && !rightCell.visited) pendingNeighbours.add(rightCell);
-        if(bottomCell != null && !bottomCell.visited) pendingNeighbours.add(bottomCell);
+    /**
+     * Поток гонки: соединение, затем чтение тиков и отправка ходов, пока поток не прерван.
+     * @param server свой сервер, останавливается вместе с потоком; null, если сервер чужой
+     */
+    private void runRace(InetSocketAddress address, RaceServer server, int id) {
+        RaceClient client = new RaceClient(new RaceClient.Listener() {
+            private int ownFlags;
+
+            @Override
+            public void onWelcome(RaceClient client) {
+                // лабиринт строится тем же генератором, что и на сервере, а не выбранным здесь
+                MazeBuilder raceBuilder = new MazeBuilder();
+                raceBuilder.setGenerator(MazeGenerators.create(client.getGeneratorName()));
+                PreparedMaze maze = buildMaze(raceBuilder, new MazeSpec(client.getCols(), client.getRows(),
+                    client.getCellSize(), client.getWallThickness(), client.getSeed()));
+                mainHandler.post(() -> {
+                    if(id != requestId) return;
+                    applyMaze(maze);
+                    raceClient = client;
+                });
+                onTick(client);
+            }
 
-        if(pendingNeighbours.size() > 0) {
-            int index = random.nextInt(pendingNeighbours.size());
-            return pendingNeighbours.get(index);
+            @Override
+            public void onTick(RaceClient client) {
+                int self = client.getPlayerId();
+                int flags = client.getPlayerFlags(self);
+                boolean crashed = (flags & RaceProtocol.FLAG_CRASHED) != 0 && (ownFlags & RaceProtocol.FLAG_CRASHED) == 0;
+                ownFlags = flags;
+                // главный поток и view держат массив как неизменяемый, поэтому он новый на каждый тик,
+                // но ровно по числу соперников, а без соперников не создается вовсе
+                int rivals = client.getPlayerCount() - (client.hasPlayer(self) ? 1 : 0);
+                float[] centers = rivals > 0 ? new float[2 * rivals] : NO_RIVALS;
+                int count = 0;
+                for(int i = 0; i < RaceProtocol.MAX_PLAYERS && count < rivals; i++) {
+                    if(i == self || !client.hasPlayer(i)) continue;
+                    centers[2 * count] = client.getPlayerX(i);
+                    centers[2 * count + 1] = client.getPlayerY(i);
+                    count++;
+                }
+                int rivalCount = count;
+                mainHandler.post(() -> {
+                    if(id != requestId || listener == null) return;
+                    listener.onRivalsMoved(centers, rivalCount);
+                    // сервер насчитал касание, которого не увидел локальный движок
+                    if(crashed && !engine.isFinished()) {
+                        engine.finish();
+                        listener.onWallTouch();
+                    }
+                });
+            }
+        });
+
+        try(Selector selector = Selector.open()) {
+            client.connect(address);
+            client.getChannel().register(selector, SelectionKey.OP_READ);
+            while(!Thread.currentThread().isInterrupted()) {
+                client.flush();
+                selector.select(RACE_FLUSH_MILLIS);
+                selector.selectedKeys().clear();
+                if(!client.poll()) break;
+            }
         }
+        catch(IOException e) {
+            Log.w(TAG, "race connection failed", e);
+        }
+        finally {
+            client.close();
+            if(server != null) server.close();
+            mainHandler.post(() -> {
+                if(raceClient == client) raceClient = null;
+            });
+        }
+    }
 
-        return null;
+    /** Догенерирует полосы под текущее положение player'а в фоне; стены подменяются в главном потоке. */
+    private void updateEndless() {
+        EndlessMaze maze = endless;
+        float playerY = playerBox.centerY();
+        endlessUpdating = true;
+        executor.execute(() -> {
+            maze.update(playerY);
+            List<RectF> walls = GeometryHelper.toRects(maze.getWalls());
+            WallIndex cullingIndex = GeometryHelper.toCullingIndex(maze.getWalls(), maze.getCellSize());
+            mainHandler.post(() -> {
+                endlessUpdating = false;
+                if(maze != endless) return;
+                engine.setWalls(maze.getWallIndex());
+                if(listener != null) listener.onWallsChanged(walls, cullingIndex);
+            });
+        });
     }
 
-    private void removeWall(Cell current, Cell next) {
-        if(current.col == next.col) {
-            if(current.row == next.row + 1) {
-                // next сверху
-                current.topWall = false;
-                next.bottomWall = false;
-            }
-            else if(current.row == next.row - 1) {
-                // next снизу
-                current.bottomWall = false;
-                next.topWall = false;
-            }
+    private void sendRaceMove(float[] centers, int count) {
+        try {
+            raceClient.move(centers, count);
         }
-        else if(current.row == next.row) {
-            if(current.col == next.col + 1) {
-                // next слева
-                current.leftWall = false;
-                next.rightWall = false;
-            }
-            else if(current.col == next.col - 1) {
-                // next справа
-                current.rightWall = false;
-                next.leftWall = false;
-            }
+        catch(IOException e) {
+            Log.w(TAG, "race move dropped", e);
         }
     }
 
-    private LinkedList<RectF> createWalls(Cell[][] cells, int cols, int rows, int wallThickness, int cellSize) {
-        LinkedList<RectF> walls = new LinkedList<>();
-        for(int i = 0; i < cols; i++)
-            for(int j = 0; j < rows; j++) {
-                Cell cell = cells[i][j];
-                float left = i * cellSize - wallThickness / 2f;
-                float top = j * cellSize - wallThickness / 2f;
-                float right = (i + 1) * cellSize + wallThickness / 2f;
-                float bottom = (j + 1) * cellSize + wallThickness / 2f;
-                if(cell.leftWall) walls.add(new RectF(left, top, left + wallThickness, bottom));
-                if(cell.topWall) walls.add(new RectF(left, top, right, top + wallThickness));
-                if(cell.rightWall) walls.add(new RectF(right - wallThickness, top, right, bottom));
-                if(cell.bottomWall) walls.add(new RectF(left, bottom - wallThickness, right, bottom));
-            }
-        return walls;
+    private PreparedMaze buildMaze(MazeSpec spec) {
+        return buildMaze(builder, spec);
     }
 
-    private boolean isWallTouched(RectF rect) {
-        for(RectF wall : walls)
-            if(RectF.intersects(rect, wall)) return true;
-        return false;
+    private PreparedMaze buildMaze(MazeBuilder builder, MazeSpec spec) {
+        long start = Metrics.start();
+        Maze maze = spec.seed != null
+            ? builder.build(spec.cols, spec.rows, spec.cellSize, spec.wallThickness, spec.seed)
+            : builder.build(spec.cols, spec.rows, spec.cellSize, spec.wallThickness);
+        Log.d(TAG, maze.getProfile() + "; walls: " + maze.getRawWallCount() + " -> " + maze.getWalls().size() + " rects");
+        PreparedMaze prepared = new PreparedMaze(maze);
+        Metrics.CREATE_MAZE.stop(start);
+        return prepared;
     }
 
-    private boolean isFinishReached(RectF playerRect, RectF finishRect) {
-        return finishRect.contains(playerRect.centerX(), playerRect.centerY());
+    private PreparedMaze loadLevel(LevelPack pack, int level, int playgroundWidth, int playgroundHeight,
+                                   int wallThickness) {
+        long start = Metrics.start();
+        MazeFormat.Header header = pack.getHeader(level);
+        int cellSize = getCellSize(header.getCols(), header.getRows(), playgroundWidth, playgroundHeight);
+        Maze maze = builder.decode(pack.getLevel(level), cellSize, wallThickness);
+        Log.d(TAG, "level " + level + ", " + maze.getProfile());
+        PreparedMaze prepared = new PreparedMaze(maze);
+        Metrics.CREATE_MAZE.stop(start);
+        return prepared;
+    }
+
+    private void applyMaze(PreparedMaze prepared) {
+        Maze maze = prepared.maze;
+        seed = maze.getSeed();
+        engine.setMaze(maze);
+        if(listener != null)
+            listener.onMazeReady(maze.getCols(), maze.getRows(), maze.getCellSize(), prepared.walls, prepared.cullingIndex);
+    }
+
+    private Future<PreparedMaze> takePrefetched(MazeSpec spec) {
+        Future<PreparedMaze> prefetched = prefetchTask;
+        if(prefetched == null) return null;
+
+        prefetchTask = null;
+        if(spec.accepts(prefetchSpec)) return prefetched;
+        prefetched.cancel(true);
+        return null;
+    }
+
+    /** @return результат завершенной (или завершающейся) задачи либо null, если она не удалась */
+    private PreparedMaze getDone(Future<PreparedMaze> future) {
+        try {
+            return future.get();
+        }
+        catch(ExecutionException | CancellationException e) {
+            Log.w(TAG, "maze prefetch failed", e);
+            return null;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
     }
 
     //endregion HELPERS
 
-    public static class Cell {
-        private final int col, row;
-        private boolean topWall = true;
-        private boolean leftWall = true;
-        private boolean bottomWall = true;
-        private boolean rightWall = true;
-        private boolean visited;
-
-        private Cell(int col, int row) {
-            this.col = col;
-            this.row = row;
+    /** Лабиринт движка вместе со стенами для view: в RectF и с индексом видимости; строится в фоне. */
+    private static final class PreparedMaze {
+        private final Maze maze;
+        private final List<RectF> walls;
+        private final WallIndex cullingIndex;
+
+        private PreparedMaze(Maze maze) {
+            this.maze = maze;
+            walls = GeometryHelper.toRects(maze.getWalls());
+            cullingIndex = GeometryHelper.toCullingIndex(maze.getWalls(), maze.getCellSize());
+        }
+    }
+
+    private static final class MazeSpec {
+        private final int cols, rows, cellSize, wallThickness;
+        // null - подойдет лабиринт с любым seed'ом
+        private final Long seed;
+
+        private MazeSpec(int cols, int rows, int cellSize, int wallThickness, Long seed) {
+            this.cols = cols;
+            this.rows = rows;
+            this.cellSize = cellSize;
+            this.wallThickness = wallThickness;
+            this.seed = seed;
+        }
+
+        /** Подходит ли лабиринт, подготовленный по спецификации prepared. */
+        private boolean accepts(MazeSpec prepared) {
+            return prepared != null && cols == prepared.cols && rows == prepared.rows
+                && cellSize == prepared.cellSize && wallThickness == prepared.wallThickness
+                && (seed == null || seed.equals(prepared.seed));
         }
     }
 }
@@ -0,0 +1,143 @@
+package com.example.mazegame.ui.customviews;
+
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+/**
+ * Камера над лабиринтом: экранная точка = точка лабиринта * zoom + (translateX, translateY).
+ * Если лабиринт по оси меньше view, он центрируется, иначе камеру нельзя увести за его край.
+ * Бесконечный лабиринт ограничен только сверху.
+ */
+public class MazeCamera {
+
+    private static final float MAX_ZOOM = 4f;
+    // player держится внутри центральной области такой доли view, дальше камера едет за ним
+    private static final float FOLLOW_AREA = 0.5f;
+
+    private int viewWidth, viewHeight;
+    private float contentWidth, contentHeight;
+    private boolean endless;
+    private float zoom = 1f, minZoom = 1f;
+    private float translateX, translateY;
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /** Новый лабиринт размером width x height (в его координатах); масштаб сбрасывается в 1. */
+    public void setContent(int viewWidth, int viewHeight, float width, float height, boolean endless) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        contentWidth = width;
+        contentHeight = height;
+        this.endless = endless;
+        zoom = 1f;
+        translateX = (viewWidth - width) / 2f;
+        translateY = (viewHeight - height) / 2f;
+        updateMinZoom();
+    }
+
+    /** View поменяла размер: лабиринт и масштаб прежние, камера только возвращается в границы. */
+    public void setViewport(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        if(contentWidth > 0 && contentHeight > 0) updateMinZoom();
+    }
+
+    /** Масштабирует относительно экранной точки (focusX, focusY), она остается на месте. */
+    public boolean zoomBy(float factor, float focusX, float focusY) {
+        float newZoom = Math.max(minZoom, Math.min(MAX_ZOOM, zoom * factor));
+        if(newZoom == zoom) return false;
+        translateX = focusX - (focusX - translateX) * newZoom / zoom;
+        translateY = focusY - (focusY - translateY) * newZoom / zoom;
+        zoom = newZoom;
+        clamp();
+        return true;
+    }
+
+    public boolean panBy(float dx, float dy) {
+        float oldX = translateX, oldY = translateY;
+        translateX += dx;
+        translateY += dy;
+        clamp();
+        return oldX != translateX || oldY != translateY;
+    }
+
+    /** Сдвигает камеру так, чтобы точка лабиринта (x, y) оказалась в центральной области. */
+    public boolean follow(float x, float y) {
+        float marginX = viewWidth * (1f - FOLLOW_AREA) / 2f, marginY = viewHeight * (1f - FOLLOW_AREA) / 2f;
+        float screenX = toScreenX(x), screenY = toScreenY(y);
+        float dx = screenX < marginX ? marginX - screenX : screenX > viewWidth - marginX ? viewWidth - marginX - screenX : 0;
+        float dy = screenY < marginY ? marginY - screenY : screenY > viewHeight - marginY ? viewHeight - marginY - screenY : 0;
+        return (dx != 0 || dy != 0) && panBy(dx, dy);
+    }
+
+    public void apply(Canvas canvas) {
+        canvas.translate(translateX, translateY);
+        canvas.scale(zoom, zoom);
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    public float getTranslateX() {
+        return translateX;
+    }
+
+    public float getTranslateY() {
+        return translateY;
+    }
+
+    public float toMazeX(float screenX) {
+        return (screenX - translateX) / zoom;
+    }
+
+    public float toMazeY(float screenY) {
+        return (screenY - translateY) / zoom;
+    }
+
+    public float toScreenX(float mazeX) {
+        return mazeX * zoom + translateX;
+    }
+
+    public float toScreenY(float mazeY) {
+        return mazeY * zoom + translateY;
+    }
+
+    /** Переводит rect из координат лабиринта в экранные (на месте). */
+    public void toScreen(RectF rect) {
+        rect.set(toScreenX(rect.left), toScreenY(rect.top), toScreenX(rect.right), toScreenY(rect.bottom));
+    }
+
+    /** Видимая часть лабиринта в его координатах. */
+    public void getVisibleRect(RectF out) {
+        out.set(toMazeX(0), toMazeY(0), toMazeX(viewWidth), toMazeY(viewHeight));
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    private void updateMinZoom() {
+        // отдалить можно до лабиринта целиком, но не дальше исходного масштаба
+        minZoom = endless ? 1f : Math.min(1f, Math.min(viewWidth / contentWidth, viewHeight / contentHeight));
+        zoom = Math.max(minZoom, zoom);
+        clamp();
+    }
+
+    private void clamp() {
+        translateX = clampAxis(translateX, viewWidth, contentWidth * zoom, false);
+        translateY = clampAxis(translateY, viewHeight, contentHeight * zoom, endless);
+    }
+
+    private static float clampAxis(float translate, int view, float content, boolean openEnd) {
+        if(content <= view && !openEnd) return (view - content) / 2f;
+        float min = openEnd ? -Float.MAX_VALUE : view - content;
+        return Math.max(min, Math.min(Math.max(0f, (view - content) / 2f), translate));
+    }
+
+    //endregion HELPERS
+}
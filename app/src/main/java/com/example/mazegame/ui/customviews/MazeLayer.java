@@ -0,0 +1,275 @@
+package com.example.mazegame.ui.customviews;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathEffect;
+import android.graphics.RectF;
+import com.example.mazegame.core.geometry.WallIndex;
+import java.util.List;
+
+/**
+ * Статичный слой лабиринта для MazeView и MazeSurfaceView: стены, финиш, прошлый след и запеченная
+ * часть текущего в bitmap'е с запасом вокруг экрана. Пока камера не ушла дальше запаса, слой только
+ * сдвигается (во время жеста масштаба - еще и растягивается), а заново рисуется, когда запаса
+ * не хватило, жест закончился или сменился лабиринт. Стены и следы рисуются только попавшие в слой.
+ * Используется только из потока, который рисует view.
+ */
+final class MazeLayer {
+
+    // запас слоя с каждой стороны экрана - доля его меньшей стороны
+    private static final float MARGIN_PERCENT = 0.25f;
+
+    private final Paint wallPaint, trailPaint, prevTrailPaint, spritePaint;
+    // слой растягивается с фильтрацией только во время жеста масштаба
+    private final Paint scaledLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // эффекты пунктира по целой фазе: запекание и перерисовка слоя не создают новых объектов
+    private final DashPathEffect[] dashEffects =
+        new DashPathEffect[Math.round(MazeView.TRAIL_DASH[0] + MazeView.TRAIL_DASH[1])];
+    private final Path runPath = new Path();
+    // часть лабиринта, попадающая в слой
+    private final RectF clip = new RectF();
+    private final RectF finishRect = new RectF();
+    private TrailPath trail = new TrailPath();
+    private TrailPath prevTrail = new TrailPath();
+    private boolean drawTrail;
+    private List<RectF> walls;
+    private WallIndex wallIndex;
+    private Bitmap finishBitmap;
+
+    private Bitmap layer;
+    private Canvas layerCanvas;
+    private boolean dirty = true;
+    // преобразование лабиринт -> слой, с которым слой нарисован (запас входит в сдвиг)
+    private float layerTranslateX, layerTranslateY, layerZoom = 1f;
+
+    MazeLayer() {
+        wallPaint = new Paint();
+        wallPaint.setColor(MazeView.WALL_COLOR);
+        wallPaint.setStyle(Paint.Style.FILL);
+
+        trailPaint = new Paint();
+        trailPaint.setColor(MazeView.TRAIL_COLOR);
+        trailPaint.setStyle(Paint.Style.STROKE);
+        trailPaint.setStrokeJoin(Paint.Join.ROUND);
+        trailPaint.setStrokeCap(Paint.Cap.ROUND);
+        trailPaint.setPathEffect(dashEffect(0f));
+
+        prevTrailPaint = new Paint(trailPaint);
+        prevTrailPaint.setColor(MazeView.PREV_TRAIL_COLOR);
+
+        // при масштабе камеры 1 спрайты рисуются пиксель в пиксель, фильтр нужен только при зуме
+        spritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    //region ******************** ACTIONS **********************************************************
+
+    void setDrawTrail(boolean drawTrail) {
+        this.drawTrail = drawTrail;
+        dirty = true;
+    }
+
+    /** Стены с индексом видимости по ним; толщина следа считается от толщины стен. */
+    void setWalls(List<RectF> walls, WallIndex wallIndex) {
+        this.walls = walls;
+        this.wallIndex = wallIndex;
+        RectF wall = !walls.isEmpty() ? walls.get(0) : null;
+        float wallThickness = wall != null ? Math.min(wall.width(), wall.height()) : 0;
+        trailPaint.setStrokeWidth(wallThickness * MazeView.TRAIL_PERCENT_TO_WALL);
+        prevTrailPaint.setStrokeWidth(wallThickness * MazeView.PREV_TRAIL_PERCENT_TO_WALL);
+        // точки ближе толщины следа на глаз не различимы
+        trail.setMinDistance(trailPaint.getStrokeWidth());
+        prevTrail.setMinDistance(trailPaint.getStrokeWidth());
+        dirty = true;
+    }
+
+    /** Пустой rect - финиша нет (бесконечный режим). */
+    void setFinish(Bitmap bitmap, RectF rect) {
+        finishBitmap = bitmap;
+        finishRect.set(rect);
+        dirty = true;
+    }
+
+    /** Слой нарисуется заново на следующем draw. */
+    void invalidate() {
+        dirty = true;
+    }
+
+    /** @return false, если точка отброшена и живой след не изменился */
+    boolean addTrailPoint(float x, float y) {
+        if(!trail.add(x, y)) return false;
+        if(trail.needsBake()) bakeTrail();
+        return true;
+    }
+
+    /** Текущий след становится прошлым; новый начнется со следующей точки. */
+    void restartTrail() {
+        TrailPath finished = trail;
+        trail = prevTrail;
+        prevTrail = finished;
+        trail.clear();
+        trailPaint.setPathEffect(dashEffect(0f));
+        dirty = true;
+    }
+
+    void clearTrail() {
+        trail.clear();
+        prevTrail.clear();
+        trailPaint.setPathEffect(dashEffect(0f));
+        dirty = true;
+    }
+
+    /**
+     * Рисует слой на экран width x height при камере (translateX, translateY, zoom).
+     * @param scaling идет жест масштаба: слой растягивается, пока его хватает, а не рисуется заново
+     */
+    void draw(Canvas canvas, int width, int height, float translateX, float translateY, float zoom, boolean scaling) {
+        if(width <= 0 || height <= 0) return;
+        float scale = zoom / layerZoom;
+        if(dirty || (scale != 1f && !scaling) || !covers(width, height, translateX, translateY, scale)) {
+            render(width, height, translateX, translateY, zoom);
+            scale = 1f;
+        }
+
+        canvas.save();
+        canvas.translate(translateX - layerTranslateX * scale, translateY - layerTranslateY * scale);
+        if(scale != 1f) canvas.scale(scale, scale);
+        canvas.drawBitmap(layer, 0, 0, scale != 1f ? scaledLayerPaint : null);
+        canvas.restore();
+    }
+
+    /** Живой след; на canvas уже применена камера. */
+    void drawLiveTrail(Canvas canvas) {
+        if(drawTrail) canvas.drawPath(trail.getLivePath(), trailPaint);
+    }
+
+    void drawSprite(Canvas canvas, Bitmap bitmap, RectF rect) {
+        // в бесконечном режиме финиша нет: finishRect пустой
+        if(bitmap == null || rect.isEmpty()) return;
+        canvas.drawBitmap(bitmap, rect.centerX() - bitmap.getWidth() / 2f, rect.centerY() - bitmap.getHeight() / 2f,
+            spritePaint);
+    }
+
+    void release() {
+        if(layer != null) layer.recycle();
+        layer = null;
+        layerCanvas = null;
+        dirty = true;
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    float getTrailWidth() {
+        return trailPaint.getStrokeWidth();
+    }
+
+    //endregion GETTERS
+
+    //region ********************* HELPERS *********************************************************
+
+    /** Закрывает ли слой весь экран при текущей камере (scale - ее масштаб относительно слоя). */
+    private boolean covers(int width, int height, float translateX, float translateY, float scale) {
+        if(layer == null) return false;
+        float left = layerTranslateX - translateX / scale, top = layerTranslateY - translateY / scale;
+        return left >= 0 && top >= 0
+            && left + width / scale <= layer.getWidth() && top + height / scale <= layer.getHeight();
+    }
+
+    private void render(int width, int height, float translateX, float translateY, float zoom) {
+        int margin = Math.round(Math.min(width, height) * MARGIN_PERCENT);
+        int layerWidth = width + 2 * margin, layerHeight = height + 2 * margin;
+        if(layer == null || layer.getWidth() != layerWidth || layer.getHeight() != layerHeight) {
+            if(layer != null) layer.recycle();
+            layer = Bitmap.createBitmap(layerWidth, layerHeight, Bitmap.Config.ARGB_8888);
+            layerCanvas = new Canvas(layer);
+        }
+        else layer.eraseColor(Color.TRANSPARENT);
+        layerTranslateX = translateX + margin;
+        layerTranslateY = translateY + margin;
+        layerZoom = zoom;
+        dirty = false;
+        if(walls == null) return;
+
+        clip.set(-layerTranslateX / zoom, -layerTranslateY / zoom,
+            (layerWidth - layerTranslateX) / zoom, (layerHeight - layerTranslateY) / zoom);
+        Canvas canvas = layerCanvas;
+        canvas.save();
+        applyLayerCamera(canvas);
+        if(drawTrail) drawVisibleTrail(canvas, prevTrail, prevTrail.getPointCount(), prevTrailPaint);
+        drawVisibleWalls(canvas);
+        drawSprite(canvas, finishBitmap, finishRect);
+        // слой перерисован посреди попытки - восстанавливаем уже запеченный след
+        if(drawTrail) drawVisibleTrail(canvas, trail, trail.getBakedPointCount(), trailPaint);
+        canvas.restore();
+    }
+
+    /** Дорисовывает живой след в слой, чтобы не обводить его заново каждый кадр. */
+    private void bakeTrail() {
+        // грязный слой и так нарисует весь запеченный след при перерисовке
+        if(!dirty && layerCanvas != null) {
+            layerCanvas.save();
+            applyLayerCamera(layerCanvas);
+            layerCanvas.drawPath(trail.getLivePath(), trailPaint);
+            layerCanvas.restore();
+        }
+        trail.markBaked();
+        trailPaint.setPathEffect(dashEffect(trail.getBakedLength()));
+    }
+
+    /**
+     * Рисует отрезки первых pointCount вершин следа, задевающие clip. Подряд идущие видимые отрезки -
+     * один контур с фазой пунктира по длине следа до его начала, поэтому пунктир совпадает
+     * с тем, что получилось бы при обводке следа целиком.
+     */
+    private void drawVisibleTrail(Canvas canvas, TrailPath path, int pointCount, Paint paint) {
+        PathEffect effect = paint.getPathEffect();
+        float pad = paint.getStrokeWidth() / 2f;
+        float length = path.getDroppedLength();
+        boolean inRun = false;
+        for(int i = 1; i < pointCount; i++) {
+            float x0 = path.getX(i - 1), y0 = path.getY(i - 1);
+            float x1 = path.getX(i), y1 = path.getY(i);
+            boolean visible = Math.max(x0, x1) + pad >= clip.left && Math.min(x0, x1) - pad <= clip.right
+                && Math.max(y0, y1) + pad >= clip.top && Math.min(y0, y1) - pad <= clip.bottom;
+            if(visible && !inRun) {
+                runPath.rewind();
+                runPath.moveTo(x0, y0);
+                paint.setPathEffect(dashEffect(length));
+                inRun = true;
+            }
+            if(visible) runPath.lineTo(x1, y1);
+            else if(inRun) {
+                canvas.drawPath(runPath, paint);
+                inRun = false;
+            }
+            float dx = x1 - x0, dy = y1 - y0;
+            length += (float) Math.sqrt(dx * dx + dy * dy);
+        }
+        if(inRun) canvas.drawPath(runPath, paint);
+        paint.setPathEffect(effect);
+    }
+
+    private void drawVisibleWalls(Canvas canvas) {
+        int count = wallIndex.gather(clip.left, clip.top, clip.right, clip.bottom);
+        for(int k = 0; k < count; k++) canvas.drawRect(walls.get(wallIndex.getGathered(k)), wallPaint);
+    }
+
+    private void applyLayerCamera(Canvas canvas) {
+        canvas.translate(layerTranslateX, layerTranslateY);
+        canvas.scale(layerZoom, layerZoom);
+    }
+
+    private DashPathEffect dashEffect(float phase) {
+        int index = Math.round(phase) % dashEffects.length;
+        DashPathEffect effect = dashEffects[index];
+        if(effect == null) dashEffects[index] = effect = new DashPathEffect(MazeView.TRAIL_DASH, index);
+        return effect;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,447 @@
+package com.example.mazegame.ui.customviews;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+import android.view.View.OnTouchListener;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.Nullable;
+import com.example.mazegame.core.Maze;
+import com.example.mazegame.core.geometry.WallIndex;
+import com.example.mazegame.core.metrics.Metrics;
+import com.example.mazegame.interfaces.IMazeView;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * То же, что MazeView, но кадры рисуются в SurfaceView отдельным потоком по vsync.
+ * Касания обрабатываются в главном потоке (там живут движок и GameInteractor), а потоку
+ * отрисовки передаются только данные: положение player'а и камеры - через TripleBuffer,
+ * точки следа - через PointQueue. Ни касания, ни отрисовка не ждут друг друга: кадр,
+ * который поток отрисовки не успел показать, заменяется следующим.
+ */
+public class MazeSurfaceView extends SurfaceView implements IMazeView, SurfaceHolder.Callback, OnTouchListener {
+
+    private static final String TAG = MazeSurfaceView.class.getSimpleName();
+    private static final float DRAWABLE_PERCENT_TO_CELL = Maze.PLAYER_PERCENT_TO_CELL;
+    // при 60 кадрах в секунду поток отрисовки должен отстать на много секунд, чтобы очередь заполнилась
+    private static final int TRAIL_QUEUE_CAPACITY = 8192;
+    // отметки в очереди следа: x = NaN, y - команда
+    private static final float TRAIL_RESTART = 0f;
+    private static final float TRAIL_CLEAR = 1f;
+    // сколько точек следа поток отрисовки забирает из очереди за раз
+    private static final int TRAIL_DRAIN_POINTS = 256;
+
+    // поля ниже, кроме отмеченных, используются только в главном потоке
+    private final MazeCamera camera = new MazeCamera();
+    private MazeTouchHandler touchHandler;
+    private RectF playerRect, startRect, finishRect;
+    private MazeView.OnMoveListener listener;
+    @DrawableRes private int playerRes, finishRes;
+    private boolean followPlayer = true;
+    private boolean drawTrail;
+    private float[] rivals = new float[0];
+    private int rivalCount;
+    private HandlerThread renderThread;
+    private Handler renderHandler;
+
+    // передаются потоку отрисовки
+    private volatile Scene scene;
+    private volatile int surfaceWidth, surfaceHeight;
+    private final TripleBuffer<FrameState> frames =
+        new TripleBuffer<>(new FrameState(), new FrameState(), new FrameState());
+    private final PointQueue trailQueue = new PointQueue(TRAIL_QUEUE_CAPACITY);
+    // кадр уже запрошен и еще не начат; повторные запросы до его начала ничего не делают
+    private final AtomicBoolean frameRequested = new AtomicBoolean();
+    private Renderer renderer;
+
+    public MazeSurfaceView(Context context) {
+        super(context);
+        init();
+    }
+
+    public MazeSurfaceView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    //region ******************** ACTIONS **********************************************************
+
+    @Override
+    public MazeSurfaceView setDrawables(@DrawableRes int playerRes, @DrawableRes int finishRes) {
+        this.playerRes = playerRes;
+        this.finishRes = finishRes;
+        return this;
+    }
+
+    @Override
+    public MazeSurfaceView setMoveListener(MazeView.OnMoveListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public MazeSurfaceView enableTrail() {
+        drawTrail = true;
+        return this;
+    }
+
+    /** Камера едет за player'ом, когда он подходит к краю view (по умолчанию включено). */
+    public MazeSurfaceView setFollowPlayer(boolean enabled) {
+        followPlayer = enabled;
+        return this;
+    }
+
+    @Override
+    public void start(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex) {
+        start(cols, rows, cellSize, walls, wallIndex, false);
+    }
+
+    /** Бесконечный режим: финиша нет, а камера едет вниз за player'ом без ограничения. */
+    @Override
+    public void startEndless(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex) {
+        start(cols, rows, cellSize, walls, wallIndex, true);
+    }
+
+    @Override
+    public void updateWalls(List<RectF> walls, WallIndex wallIndex) {
+        Scene old = scene;
+        if(old == null) return;
+        scene = new Scene(walls, wallIndex, old.finishRect, old.playerRes, old.finishRes, old.spriteSize, old.drawTrail);
+        requestRender();
+    }
+
+    @Override
+    public void restart() {
+        if(startRect == null) return;
+        touchHandler.setEnabled(true);
+        if(playerRect == null) playerRect = new RectF();
+        playerRect.set(startRect);
+        if(followPlayer) camera.follow(playerRect.centerX(), playerRect.centerY());
+        // текущий след становится прошлым, новый начинается из центра старта
+        trailQueue.offerMarker(Float.NaN, TRAIL_RESTART);
+        trailQueue.offerMarker(playerRect.centerX(), playerRect.centerY());
+        publishFrame();
+    }
+
+    @Override
+    public void clear() {
+        trailQueue.offerMarker(Float.NaN, TRAIL_CLEAR);
+        requestRender();
+    }
+
+    @Override
+    public void stop() {
+        touchHandler.setEnabled(false);
+    }
+
+    @Override
+    public void setRivals(float[] centers, int count) {
+        rivals = centers;
+        rivalCount = count;
+        publishFrame();
+    }
+
+    //endregion ACTIONS
+
+    //region ********************** INIT ***********************************************************
+
+    private void init() {
+        renderer = new Renderer(new SpriteCache(getResources()));
+        // поверх фона экрана: прозрачная поверхность над окном
+        setZOrderOnTop(true);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        getHolder().addCallback(this);
+        touchHandler = new MazeTouchHandler(getContext(), camera, new MazeTouchHandler.Callback() {
+            @Override
+            public void onCameraMoved() {
+                publishFrame();
+            }
+
+            @Override
+            public void onPlayerGrabbed(float[] centers) {
+                if(listener != null) listener.onMove(playerRect, centers, 0, finishRect);
+            }
+
+            @Override
+            public void onPlayerDragged(float[] centers, int count) {
+                movePlayer(centers, count);
+            }
+        });
+        setOnTouchListener(this);
+    }
+
+    //endregion INIT
+
+    //region ******************** OVERRIDE *********************************************************
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        frameRequested.set(false);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        camera.setViewport(width, height);
+        renderer.invalidateLayer();
+        publishFrame();
+    }
+
+    /** После возврата поверхность использовать нельзя, поэтому дожидаемся остановки потока отрисовки. */
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        renderHandler.removeCallbacksAndMessages(null);
+        renderHandler.post(renderer::stop);
+        renderThread.quitSafely();
+        try {
+            renderThread.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        renderThread = null;
+        renderHandler = null;
+        renderer.release();
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        long start = Metrics.start();
+        boolean handled = handleTouch(event);
+        Metrics.TOUCH.stop(start);
+        return handled;
+    }
+
+    //endregion OVERRIDE
+
+    //region ********************* HELPERS *********************************************************
+
+    private boolean handleTouch(MotionEvent event) {
+        if(playerRect == null) return true;
+        touchHandler.onTouchEvent(event, playerRect);
+        return true;
+    }
+
+    private void start(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex, boolean endless) {
+        camera.setContent(getWidth(), getHeight(), cols * cellSize, rows * cellSize, endless);
+
+        float drawableMargin = (cellSize - cellSize * DRAWABLE_PERCENT_TO_CELL) / 2f;
+        touchHandler.setTouchPadding(drawableMargin / 2f);
+        startRect = new RectF(drawableMargin, drawableMargin, cellSize - drawableMargin, cellSize - drawableMargin);
+        finishRect = endless ? new RectF() : new RectF(
+            (cols - 1) * cellSize + drawableMargin,
+            (rows - 1) * cellSize + drawableMargin,
+            cols * cellSize - drawableMargin,
+            rows * cellSize - drawableMargin);
+
+        scene = new Scene(walls, wallIndex, new RectF(finishRect), playerRes, finishRes,
+            Math.round(startRect.width()), drawTrail);
+        clear();
+        restart();
+    }
+
+    private void movePlayer(float[] centers, int count) {
+        int reached = listener != null ? listener.onMove(playerRect, centers, count, finishRect) : count;
+        if(listener == null)
+            playerRect.offset(
+                centers[2 * count - 2] - playerRect.centerX(),
+                centers[2 * count - 1] - playerRect.centerY());
+
+        if(drawTrail) {
+            for(int i = 0; i < reached; i++) trailQueue.offer(centers[2 * i], centers[2 * i + 1]);
+            if(reached < count) trailQueue.offer(playerRect.centerX(), playerRect.centerY());
+        }
+        if(followPlayer) camera.follow(playerRect.centerX(), playerRect.centerY());
+        publishFrame();
+    }
+
+    /** Отдает потоку отрисовки текущие положения player'а и камеры. */
+    private void publishFrame() {
+        FrameState frame = frames.getBack();
+        if(playerRect != null) frame.player.set(playerRect);
+        else frame.player.setEmpty();
+        frame.translateX = camera.getTranslateX();
+        frame.translateY = camera.getTranslateY();
+        frame.zoom = camera.getZoom();
+        frame.scaling = touchHandler.isScaling();
+        // массив соперников после setRivals не меняется, его можно отдать без копирования
+        frame.rivals = rivals;
+        frame.rivalCount = rivalCount;
+        frames.publish();
+        requestRender();
+    }
+
+    private void requestRender() {
+        if(renderHandler != null && frameRequested.compareAndSet(false, true)) renderHandler.post(renderer);
+    }
+
+    //endregion HELPERS
+
+    /** Лабиринт целиком; неизменяем, на каждый start и updateWalls создается новый. */
+    private static final class Scene {
+        private final List<RectF> walls;
+        private final WallIndex wallIndex;
+        private final RectF finishRect;
+        private final int playerRes, finishRes, spriteSize;
+        private final boolean drawTrail;
+
+        private Scene(List<RectF> walls, WallIndex wallIndex, RectF finishRect, int playerRes, int finishRes, int spriteSize,
+                      boolean drawTrail) {
+            this.walls = walls;
+            this.wallIndex = wallIndex;
+            this.finishRect = finishRect;
+            this.playerRes = playerRes;
+            this.finishRes = finishRes;
+            this.spriteSize = spriteSize;
+            this.drawTrail = drawTrail;
+        }
+    }
+
+    /** То, что меняется каждый кадр; передается через TripleBuffer. */
+    private static final class FrameState {
+        private final RectF player = new RectF();
+        private float translateX, translateY, zoom = 1f;
+        private boolean scaling;
+        private float[] rivals;
+        private int rivalCount;
+    }
+
+    /**
+     * Все, что ниже, работает только в потоке отрисовки. Кадр рисуется по vsync и только
+     * если его запросили; статичный слой (стены, финиш, прошлый и запеченный след) - тот же
+     * MazeLayer, что у MazeView, и рисуется заново только когда камера ушла за его запас.
+     */
+    private final class Renderer implements Runnable, Choreographer.FrameCallback {
+        private final SpriteCache sprites;
+        private final Paint rivalPaint;
+        private final MazeLayer layer = new MazeLayer();
+        private final float[] drained = new float[2 * TRAIL_DRAIN_POINTS];
+        private Scene drawnScene;
+        private Bitmap playerBitmap, finishBitmap;
+        // слой нужно нарисовать заново; пишется из главного потока при смене размера
+        private volatile boolean layerInvalid;
+        private boolean stopped;
+
+        private Renderer(SpriteCache sprites) {
+            this.sprites = sprites;
+            rivalPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            rivalPaint.setColor(MazeView.RIVAL_COLOR);
+        }
+
+        /** Запрос кадра пришел в поток отрисовки - ждем ближайший vsync. */
+        @Override
+        public void run() {
+            stopped = false;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // запросы, пришедшие во время отрисовки, назначат следующий кадр
+            frameRequested.set(false);
+            if(stopped) return;
+            long start = Metrics.start();
+            if(drawFrame()) {
+                Metrics.DRAW.stop(start);
+                Metrics.frame();
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        private void invalidateLayer() {
+            layerInvalid = true;
+        }
+
+        /** Вызывается из главного потока, когда поток отрисовки уже остановлен. */
+        private void release() {
+            layer.release();
+            sprites.clear();
+            playerBitmap = null;
+            finishBitmap = null;
+            // спрайты возьмутся заново на первом кадре новой поверхности
+            drawnScene = null;
+        }
+
+        private boolean drawFrame() {
+            Scene scene = MazeSurfaceView.this.scene;
+            if(scene == null) return false;
+            if(scene != drawnScene) applyScene(scene);
+
+            frames.update();
+            FrameState frame = frames.getFront();
+            if(layerInvalid) {
+                layerInvalid = false;
+                layer.invalidate();
+            }
+            drainTrail();
+
+            SurfaceHolder holder = getHolder();
+            Canvas canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? holder.lockHardwareCanvas()
+                : holder.lockCanvas();
+            if(canvas == null) return false;
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                layer.draw(canvas, surfaceWidth, surfaceHeight, frame.translateX, frame.translateY, frame.zoom,
+                    frame.scaling);
+
+                canvas.save();
+                canvas.translate(frame.translateX, frame.translateY);
+                canvas.scale(frame.zoom, frame.zoom);
+                layer.drawLiveTrail(canvas);
+                MazeView.drawRivals(canvas, frame.rivals, frame.rivalCount, frame.player.width() / 2f, rivalPaint);
+                layer.drawSprite(canvas, playerBitmap, frame.player);
+                canvas.restore();
+            }
+            finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+            return true;
+        }
+
+        private void applyScene(Scene scene) {
+            drawnScene = scene;
+            playerBitmap = sprites.get(scene.playerRes, scene.spriteSize);
+            finishBitmap = sprites.get(scene.finishRes, scene.spriteSize);
+            layer.setDrawTrail(scene.drawTrail);
+            layer.setWalls(scene.walls, scene.wallIndex);
+            layer.setFinish(finishBitmap, scene.finishRect);
+        }
+
+        private void drainTrail() {
+            int count;
+            while((count = trailQueue.drain(drained)) > 0) {
+                for(int i = 0; i < count; i++) {
+                    float x = drained[2 * i], y = drained[2 * i + 1];
+                    if(!Float.isNaN(x)) layer.addTrailPoint(x, y);
+                    else if(y == TRAIL_CLEAR) layer.clearTrail();
+                    else layer.restartTrail();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.mazegame.ui.customviews;
+
+import android.content.Context;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+
+/**
+ * Касания MazeView и MazeSurfaceView: двумя пальцами масштаб, касанием player'а - перетаскивание,
+ * касанием мимо него - сдвиг камеры. Точки перетаскивания переводятся в координаты центра player'а,
+ * а что с ними делать (движок, след, перерисовка), решает view через Callback.
+ * Используется только в главном потоке.
+ */
+final class MazeTouchHandler {
+
+    private final MazeCamera camera;
+    private final Callback callback;
+    private final ScaleGestureDetector scaleDetector;
+    private final RectF touchRect = new RectF();
+    // смещение пальца от центра player'а, в координатах лабиринта
+    private float touchOffsetX, touchOffsetY;
+    private float lastPanX, lastPanY;
+    private boolean dragging, panning, scaling;
+    private boolean enabled = true;
+    // точки касания одного MotionEvent (включая исторические), по паре координат на точку
+    private float[] moveSamples = new float[16];
+    private float touchPadding;
+
+    interface Callback {
+        /** Камеру сдвинули или масштабировали жестом. */
+        void onCameraMoved();
+
+        /** Палец опустился на player'а. */
+        void onPlayerGrabbed(float[] centers);
+
+        /** @param centers пары координат центра player'а для всех точек события */
+        void onPlayerDragged(float[] centers, int count);
+    }
+
+    MazeTouchHandler(Context context, MazeCamera camera, Callback callback) {
+        this.camera = camera;
+        this.callback = callback;
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                scaling = true;
+                return true;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                if(camera.zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY()))
+                    callback.onCameraMoved();
+                return true;
+            }
+
+            // isInProgress() внутри onScaleEnd еще true, поэтому жест отмечается своим флагом
+            @Override
+            public void onScaleEnd(ScaleGestureDetector detector) {
+                scaling = false;
+                callback.onCameraMoved();
+            }
+        });
+    }
+
+    //region ******************** ACTIONS **********************************************************
+
+    /** Для удобства зона касания player'а шире зоны его отрисовки и пересечений на padding. */
+    void setTouchPadding(float padding) {
+        touchPadding = padding;
+    }
+
+    /** Выключенный handler не дает перетаскивать player'а; камеру двигать можно. */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        dragging = false;
+    }
+
+    void onTouchEvent(MotionEvent event, RectF playerRect) {
+        // двумя пальцами масштабируем; перетаскивание player'а при этом прерывается
+        scaleDetector.onTouchEvent(event);
+        if(scaleDetector.isInProgress() || event.getPointerCount() > 1) {
+            dragging = false;
+            panning = false;
+            return;
+        }
+
+        float eventX = camera.toMazeX(event.getX());
+        float eventY = camera.toMazeY(event.getY());
+        switch(event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                touchRect.set(
+                    playerRect.left - touchPadding,
+                    playerRect.top - touchPadding,
+                    playerRect.right + touchPadding,
+                    playerRect.bottom + touchPadding);
+                dragging = enabled && touchRect.contains(eventX, eventY);
+                // касание мимо player'а двигает камеру
+                panning = !dragging;
+                lastPanX = event.getX();
+                lastPanY = event.getY();
+                if(!dragging) break;
+
+                touchOffsetX = eventX - playerRect.centerX();
+                touchOffsetY = eventY - playerRect.centerY();
+                callback.onPlayerGrabbed(moveSamples);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if(panning && camera.panBy(event.getX() - lastPanX, event.getY() - lastPanY)) callback.onCameraMoved();
+                lastPanX = event.getX();
+                lastPanY = event.getY();
+                if(dragging && enabled) callback.onPlayerDragged(moveSamples, collectMoveSamples(event));
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                dragging = false;
+                panning = false;
+                break;
+            default: break;
+        }
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    /** Идет жест масштаба: статичный слой пока растягивается, а не рисуется заново. */
+    boolean isScaling() {
+        return scaling;
+    }
+
+    //endregion GETTERS
+
+    //region ********************* HELPERS *********************************************************
+
+    /** Переводит все точки события (сначала исторические) в координаты центра player'а. */
+    private int collectMoveSamples(MotionEvent event) {
+        int count = event.getHistorySize() + 1;
+        if(moveSamples.length < count * 2) moveSamples = new float[count * 2];
+
+        for(int i = 0; i < count - 1; i++) {
+            moveSamples[2 * i] = camera.toMazeX(event.getHistoricalX(i)) - touchOffsetX;
+            moveSamples[2 * i + 1] = camera.toMazeY(event.getHistoricalY(i)) - touchOffsetY;
+        }
+        moveSamples[2 * count - 2] = camera.toMazeX(event.getX()) - touchOffsetX;
+        moveSamples[2 * count - 1] = camera.toMazeY(event.getY()) - touchOffsetY;
+        return count;
+    }
+
+    //endregion HELPERS
+}
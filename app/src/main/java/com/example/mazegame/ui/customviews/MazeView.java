@@ -2,12 +2,10 @@ package com.example.mazegame.ui.customviews;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.DashPathEffect;
 import android.graphics.Paint;
-import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
@@ -15,32 +13,63 @@ import android.view.View;
 import android.view.View.OnTouchListener;
 import androidx.annotation.DrawableRes;
 import androidx.annotation.Nullable;
+import com.example.mazegame.core.Maze;
+import com.example.mazegame.core.geometry.WallIndex;
+import com.example.mazegame.core.metrics.Histogram;
+import com.example.mazegame.core.metrics.Metrics;
+import com.example.mazegame.interfaces.IMazeView;
 import java.util.List;
 
-public class MazeView extends View implements OnTouchListener {
-
-    private static final float DRAWABLE_PERCENT_TO_CELL = 0.45f;
-    private static final float TRAIL_PERCENT_TO_WALL = 0.75f;
-    private static final float PREV_TRAIL_PERCENT_TO_WALL = TRAIL_PERCENT_TO_WALL / 2f;
-    private static final int WALL_COLOR = Color.WHITE;
-    private static final int TRAIL_COLOR = Color.WHITE;
-    private static final int PREV_TRAIL_COLOR = Color.LTGRAY;
-
-    private Paint wallPaint, trailPaint, prevTrailPaint;
+public class MazeView extends View implements IMazeView, OnTouchListener {
+
+    private static final float DRAWABLE_PERCENT_TO_CELL = Maze.PLAYER_PERCENT_TO_CELL;
+    static final float TRAIL_PERCENT_TO_WALL = 0.75f;
+    static final float PREV_TRAIL_PERCENT_TO_WALL = TRAIL_PERCENT_TO_WALL / 2f;
+    static final int WALL_COLOR = Color.WHITE;
+    static final int TRAIL_COLOR = Color.WHITE;
+    static final int PREV_TRAIL_COLOR = Color.LTGRAY;
+    static final float[] TRAIL_DASH = { 10f, 20f };
+    // соперники в гонке - полупрозрачные круги размером с player'а
+    static final int RIVAL_COLOR = 0x80FFFFFF;
+    // тап тремя пальцами включает и выключает метрики вместе с оверлеем
+    private static final int METRICS_TOGGLE_POINTERS = 3;
+    // через сколько кадров обновлять текст оверлея метрик
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    private static final int OVERLAY_COLOR = Color.YELLOW;
+    private static final float OVERLAY_TEXT_SIZE = 28f;
+
+    private Paint overlayPaint, rivalPaint;
+    @DrawableRes private int playerRes, finishRes;
+    // спрайты уже в размере playerRect / finishRect, берутся из sprites при смене размера ячейки
+    private SpriteCache sprites;
     private Bitmap playerBitmap, finishBitmap;
-    private RectF playerRect, touchRect, startRect, finishRect;
-    private Path trailPath, prevTrailPath;
+    private int spriteSize;
+    // стены, финиш, прошлый след и запеченная часть текущего
+    private MazeLayer layer;
+    private RectF playerRect, startRect, finishRect, dirtyRect;
+    private Rect dirtyBounds;
     private List<RectF> walls;
     private OnMoveListener listener;
 
-    private int hrzOffset, vrtOffset;
-    private float touchOffsetX, touchOffsetY;
-    private float additionalTouchPadding;
-    private boolean touchesEnabled = true;
+    private MazeCamera camera;
+    private MazeTouchHandler touchHandler;
+    private boolean followPlayer = true;
+    private float[] rivals = new float[0];
+    private int rivalCount;
     private boolean drawTrail;
+    private boolean partialInvalidation = true;
+    private boolean endless;
+    private boolean metricsOverlay;
+    // строки оверлея пересобираются раз в OVERLAY_REFRESH_FRAMES кадров, а не на каждый кадр
+    private String[] overlayLines = new String[0];
+    private int overlayFrames;
 
     public interface OnMoveListener {
-        void onMove(RectF playerRect, RectF finishRect);
+        /**
+         * @param centers пары координат центра player'а для всех точек касания с прошлого вызова
+         * @return сколько точек из centers пройдено; playerRect при этом уже сдвинут
+         */
+        int onMove(RectF playerRect, float[] centers, int count, RectF finishRect);
     }
 
     public MazeView(Context context) {
@@ -55,45 +84,92 @@ public class MazeView extends View implements OnTouchListener {
 
     //region ******************** ACTIONS **********************************************************
 
+    @Override
     public MazeView setDrawables(@DrawableRes int playerRes, @DrawableRes int finishRes) {
-        playerBitmap = BitmapFactory.decodeResource(getResources(), playerRes);
-        finishBitmap = BitmapFactory.decodeResource(getResources(), finishRes);
+        this.playerRes = playerRes;
+        this.finishRes = finishRes;
+        loadSprites();
         return this;
     }
 
+    @Override
     public MazeView setMoveListener(OnMoveListener listener) {
         this.listener = listener;
         return this;
     }
 
+    @Override
     public MazeView enableTrail() {
         drawTrail = true;
+        layer.setDrawTrail(true);
+        return this;
+    }
+
+    /** При перемещении перерисовывать только область вокруг player'а (по умолчанию включено). */
+    public MazeView setPartialInvalidation(boolean enabled) {
+        partialInvalidation = enabled;
+        return this;
+    }
+
+    /** Камера едет за player'ом, когда он подходит к краю view (по умолчанию включено). */
+    public MazeView setFollowPlayer(boolean enabled) {
+        followPlayer = enabled;
         return this;
     }
 
-    public void start(int cols, int rows, int cellSize, List<RectF> walls) {
+    /** Поверх лабиринта выводится сводка Metrics; сами метрики включаются отдельно. */
+    public MazeView setMetricsOverlay(boolean enabled) {
+        metricsOverlay = enabled;
+        overlayFrames = OVERLAY_REFRESH_FRAMES;
+        invalidate();
+        return this;
+    }
+
+    @Override
+    public void start(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex) {
+        start(cols, rows, cellSize, walls, wallIndex, false);
+    }
+
+    /** Бесконечный режим: финиша нет, а камера едет вниз за player'ом без ограничения. */
+    @Override
+    public void startEndless(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex) {
+        start(cols, rows, cellSize, walls, wallIndex, true);
+    }
+
+    /** Новые стены того же лабиринта (бесконечный режим догрузил или выгрузил полосы). */
+    @Override
+    public void updateWalls(List<RectF> walls, WallIndex wallIndex) {
         this.walls = walls;
-        clear();
-        prepareMaze(cols, rows, cellSize);
-        restart();
+        layer.setWalls(walls, wallIndex);
+        invalidate();
     }
 
+    @Override
     public void restart() {
-        touchesEnabled = true;
-        playerRect = new RectF(startRect);
-        prevTrailPath.set(trailPath);
-        trailPath.reset();
-        trailPath.moveTo(playerRect.centerX(), playerRect.centerY());
+        touchHandler.setEnabled(true);
+        if(playerRect == null) playerRect = new RectF();
+        playerRect.set(startRect);
+        if(followPlayer) camera.follow(playerRect.centerX(), playerRect.centerY());
+        layer.restartTrail();
+        layer.addTrailPoint(playerRect.centerX(), playerRect.centerY());
         invalidate();
     }
 
+    @Override
     public void clear() {
-        prevTrailPath.reset();
-        trailPath.reset();
+        layer.clearTrail();
     }
 
+    @Override
     public void stop() {
-        touchesEnabled = false;
+        touchHandler.setEnabled(false);
+    }
+
+    @Override
+    public void setRivals(float[] centers, int count) {
+        rivals = centers;
+        rivalCount = count;
+        invalidate();
     }
 
     //endregion ACTIONS
@@ -101,24 +177,35 @@ public class MazeView extends View implements OnTouchListener {
     //region ********************** INIT ***********************************************************
 
     private void init() {
-        trailPath = new Path();
-        prevTrailPath = new Path();
-
-        wallPaint = new Paint();
-        wallPaint.setColor(WALL_COLOR);
-        wallPaint.setStyle(Paint.Style.FILL);
-
-        trailPaint = new Paint();
-        trailPaint.setColor(TRAIL_COLOR);
-        trailPaint.setStyle(Paint.Style.STROKE);
-        trailPaint.setStrokeJoin(Paint.Join.ROUND);
-        trailPaint.setStrokeCap(Paint.Cap.ROUND);
-        trailPaint.setPathEffect(new DashPathEffect(new float[] { 10f, 20f }, 0f));
+        sprites = new SpriteCache(getResources());
+        layer = new MazeLayer();
+
+        rivalPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        rivalPaint.setColor(RIVAL_COLOR);
+
+        overlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        overlayPaint.setColor(OVERLAY_COLOR);
+        overlayPaint.setTextSize(OVERLAY_TEXT_SIZE);
+
+        dirtyRect = new RectF();
+        camera = new MazeCamera();
+        touchHandler = new MazeTouchHandler(getContext(), camera, new MazeTouchHandler.Callback() {
+            @Override
+            public void onCameraMoved() {
+                invalidate();
+            }
 
-        prevTrailPaint = new Paint(trailPaint);
-        prevTrailPaint.setColor(PREV_TRAIL_COLOR);
+            @Override
+            public void onPlayerGrabbed(float[] centers) {
+                if(listener != null) listener.onMove(playerRect, centers, 0, finishRect);
+            }
 
-        touchRect = new RectF();
+            @Override
+            public void onPlayerDragged(float[] centers, int count) {
+                movePlayer(centers, count);
+            }
+        });
+        dirtyBounds = new Rect();
         setOnTouchListener(this);
     }
 
@@ -129,71 +216,75 @@ public class MazeView extends View implements OnTouchListener {
     @Override
     protected void onDraw(Canvas canvas) {
         if(!isMazeReady()) return;
-
-        canvas.translate(hrzOffset, vrtOffset);
-        if(drawTrail) {
-            canvas.drawPath(prevTrailPath, prevTrailPaint);
-            canvas.drawPath(trailPath, trailPaint);
-        }
-        for(RectF wall : walls) canvas.drawRect(wall, wallPaint);
-        canvas.drawBitmap(finishBitmap, null, finishRect, null);
-        canvas.drawBitmap(playerBitmap, null, playerRect, null);
+        if(playerBitmap == null || finishBitmap == null) loadSprites();
+        if(playerBitmap == null || finishBitmap == null) return;
+        long start = Metrics.start();
+
+        layer.draw(canvas, getWidth(), getHeight(), camera.getTranslateX(), camera.getTranslateY(), camera.getZoom(),
+            touchHandler.isScaling());
+
+        canvas.save();
+        camera.apply(canvas);
+        layer.drawLiveTrail(canvas);
+        drawRivals(canvas, rivals, rivalCount, playerRect.width() / 2f, rivalPaint);
+        layer.drawSprite(canvas, playerBitmap, playerRect);
+        canvas.restore();
+        if(metricsOverlay) drawMetricsOverlay(canvas);
+
+        Metrics.DRAW.stop(start);
+        Metrics.frame();
     }
 
     @Override
-    public boolean onTouch(View v, MotionEvent event) {
-        float eventX = event.getX();
-        float eventY = event.getY();
-        if(!isMazeReady()) return true;
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        camera.setViewport(w, h);
+        layer.invalidate();
+    }
 
-        // для удобства расширяем зону касания; зона отрисовки player'а
-        // и расчета его пересечений при этом остается неизменной
-        touchRect.set(
-            playerRect.left - additionalTouchPadding,
-            playerRect.top - additionalTouchPadding,
-            playerRect.right + additionalTouchPadding,
-            playerRect.bottom + additionalTouchPadding);
-        boolean touchAccepted = touchesEnabled
-            && touchRect.contains(eventX - hrzOffset, eventY - vrtOffset);
-
-        if(touchAccepted)
-            switch(event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    touchOffsetX = eventX - playerRect.centerX();
-                    touchOffsetY = eventY - playerRect.centerY();
-
-                    if(listener != null) listener.onMove(playerRect, finishRect);
-                    break;
-                case MotionEvent.ACTION_MOVE:
-                    playerRect.offset(
-                        eventX - (playerRect.centerX() + touchOffsetX),
-                        eventY - (playerRect.centerY() + touchOffsetY));
-                    if(drawTrail) trailPath.lineTo(eventX - touchOffsetX, eventY - touchOffsetY);
-                    invalidate();
-
-                    if(listener != null) listener.onMove(playerRect, finishRect);
-                    break;
-                default: break;
-            }
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        layer.release();
+        // после возвращения в окно onDraw возьмет спрайты из кеша заново
+        sprites.clear();
+        playerBitmap = null;
+        finishBitmap = null;
+    }
 
-        return true;
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        long start = Metrics.start();
+        boolean handled = handleTouch(event);
+        Metrics.TOUCH.stop(start);
+        return handled;
     }
 
     //endregion OVERRIDE
 
     //region ********************* HELPERS *********************************************************
 
-    private void prepareMaze(int cols, int rows, int cellSize) {
-        hrzOffset = (getWidth() - cols * cellSize) / 2;
-        vrtOffset = (getHeight() - rows * cellSize) / 2;
+    private boolean handleTouch(MotionEvent event) {
+        if(!isMazeReady()) return true;
+        if(event.getActionMasked() == MotionEvent.ACTION_POINTER_DOWN
+            && event.getPointerCount() == METRICS_TOGGLE_POINTERS) toggleMetrics();
+        touchHandler.onTouchEvent(event, playerRect);
+        return true;
+    }
+
+    private void start(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex, boolean endless) {
+        this.endless = endless;
+        updateWalls(walls, wallIndex);
+        clear();
+        prepareMaze(cols, rows, cellSize);
+        restart();
+    }
 
-        RectF wall = !walls.isEmpty() ? walls.get(0) : null;
-        float wallThickness = wall != null ? Math.min(wall.width(), wall.height()) : 0;
-        trailPaint.setStrokeWidth(wallThickness * TRAIL_PERCENT_TO_WALL);
-        prevTrailPaint.setStrokeWidth(wallThickness * PREV_TRAIL_PERCENT_TO_WALL);
+    private void prepareMaze(int cols, int rows, int cellSize) {
+        camera.setContent(getWidth(), getHeight(), cols * cellSize, rows * cellSize, endless);
 
         float drawableMargin = (cellSize - cellSize * DRAWABLE_PERCENT_TO_CELL) / 2f;
-        additionalTouchPadding = drawableMargin / 2f;
+        touchHandler.setTouchPadding(drawableMargin / 2f);
         startRect = new RectF(
             drawableMargin,
             drawableMargin,
@@ -206,11 +297,103 @@ public class MazeView extends View implements OnTouchListener {
             cols * cellSize - drawableMargin,
             rows * cellSize - drawableMargin
         );
+        // в бесконечном режиме финиша нет
+        if(endless) finishRect.setEmpty();
+        spriteSize = Math.round(startRect.width());
+        loadSprites();
+    }
+
+    /** Спрайты под текущий размер; для того же размера берутся из кеша без декодирования. */
+    private void loadSprites() {
+        if(spriteSize <= 0 || playerRes == 0 || finishRes == 0) return;
+        playerBitmap = sprites.get(playerRes, spriteSize);
+        finishBitmap = sprites.get(finishRes, spriteSize);
+        layer.setFinish(finishBitmap, finishRect);
+    }
+
+    static void drawRivals(Canvas canvas, float[] centers, int count, float radius, Paint paint) {
+        for(int i = 0; i < count; i++) canvas.drawCircle(centers[2 * i], centers[2 * i + 1], radius, paint);
+    }
+
+    private void movePlayer(float[] centers, int count) {
+        // новый отрезок следа идет от центра к центру, поэтому он целиком
+        // покрывается старым и новым положением player'а
+        dirtyRect.set(playerRect);
+        // listener двигает player'а по точкам и может остановить его в точке касания
+        // стены, поэтому след дорисовываем уже после проверки
+        int reached = listener != null
+            ? listener.onMove(playerRect, centers, count, finishRect)
+            : moveTo(centers, count);
+
+        if(drawTrail) {
+            for(int i = 0; i < reached; i++) layer.addTrailPoint(centers[2 * i], centers[2 * i + 1]);
+            if(reached < count) layer.addTrailPoint(playerRect.centerX(), playerRect.centerY());
+        }
+
+        // у края view камера едет за player'ом; следующее событие переведется в новые координаты,
+        // и player останется под пальцем
+        if(followPlayer && camera.follow(playerRect.centerX(), playerRect.centerY())) {
+            invalidate();
+            return;
+        }
+
+        for(int i = 0; i < reached; i++)
+            dirtyRect.union(
+                centers[2 * i] - playerRect.width() / 2f,
+                centers[2 * i + 1] - playerRect.height() / 2f,
+                centers[2 * i] + playerRect.width() / 2f,
+                centers[2 * i + 1] + playerRect.height() / 2f);
+        dirtyRect.union(playerRect);
+        invalidateMoved();
+    }
+
+    private int moveTo(float[] centers, int count) {
+        playerRect.offset(
+            centers[2 * count - 2] - playerRect.centerX(),
+            centers[2 * count - 1] - playerRect.centerY());
+        return count;
+    }
+
+    private void invalidateMoved() {
+        // оверлей метрик лежит поверх всего view и обновляется вместе с ним
+        if(!partialInvalidation || metricsOverlay) {
+            invalidate();
+            return;
+        }
+
+        // запас на толщину следа (скругленные концы) и на сглаживание
+        float margin = (drawTrail ? layer.getTrailWidth() / 2f * camera.getZoom() : 0f) + 1f;
+        camera.toScreen(dirtyRect);
+        dirtyRect.inset(-margin, -margin);
+        dirtyRect.roundOut(dirtyBounds);
+        // с API 21 при аппаратном ускорении область вычисляется самой системой,
+        // но при программной отрисовке перерисовывается только dirtyBounds
+        invalidate(dirtyBounds);
+    }
+
+    private void toggleMetrics() {
+        boolean enabled = !Metrics.isEnabled();
+        if(enabled) Metrics.reset();
+        Metrics.setEnabled(enabled);
+        setMetricsOverlay(enabled);
+    }
+
+    private void drawMetricsOverlay(Canvas canvas) {
+        if(++overlayFrames >= OVERLAY_REFRESH_FRAMES) {
+            Histogram[] histograms = Metrics.getHistograms();
+            if(overlayLines.length != histograms.length) overlayLines = new String[histograms.length];
+            for(int i = 0; i < histograms.length; i++) overlayLines[i] = histograms[i].summary();
+            overlayFrames = 0;
+        }
+
+        float lineHeight = overlayPaint.getFontSpacing();
+        for(int i = 0; i < overlayLines.length; i++)
+            canvas.drawText(overlayLines[i], lineHeight / 2f, lineHeight * (i + 1), overlayPaint);
     }
 
     private boolean isMazeReady() {
         return playerRect != null && startRect != null && finishRect != null
-            && playerBitmap != null && finishBitmap != null && walls != null;
+            && playerRes != 0 && finishRes != 0 && walls != null;
     }
 
     //endregion HELPERS
@@ -0,0 +1,77 @@
+package com.example.mazegame.ui.customviews;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь точек (пар float) от одного потока к другому без блокировок: кольцевой буфер,
+ * head двигает только читатель, tail - только писатель. Размер фиксирован, памяти
+ * при работе не выделяется. Последние RESERVED мест доступны только через offerMarker,
+ * чтобы служебные отметки не терялись, даже когда читатель отстал.
+ */
+public class PointQueue {
+
+    private static final int RESERVED = 16;
+
+    private final float[] points;
+    private final int mask;
+    private final AtomicInteger head = new AtomicInteger();
+    private final AtomicInteger tail = new AtomicInteger();
+
+    /** @param capacity количество точек, степень двойки */
+    public PointQueue(int capacity) {
+        if(Integer.bitCount(capacity) != 1 || capacity <= RESERVED)
+            throw new IllegalArgumentException("capacity must be a power of two above " + RESERVED);
+        points = new float[capacity * 2];
+        mask = capacity - 1;
+    }
+
+    //region ******************* WRITER ************************************************************
+
+    /** @return false, если очередь заполнена и точка отброшена */
+    public boolean offer(float x, float y) {
+        return offer(x, y, RESERVED);
+    }
+
+    /** Как offer, но может занять резерв; для отметок, которые нельзя пропустить. */
+    public boolean offerMarker(float x, float y) {
+        return offer(x, y, 0);
+    }
+
+    //endregion WRITER
+
+    //region ******************* READER ************************************************************
+
+    /**
+     * Забирает накопленные точки в out (пары координат).
+     * @return сколько точек забрано, не больше out.length / 2
+     */
+    public int drain(float[] out) {
+        int h = head.get();
+        int count = Math.min(tail.get() - h, out.length / 2);
+        for(int i = 0; i < count; i++) {
+            int slot = (h + i) & mask;
+            out[2 * i] = points[2 * slot];
+            out[2 * i + 1] = points[2 * slot + 1];
+        }
+        // место освобождается только после копирования
+        head.lazySet(h + count);
+        return count;
+    }
+
+    //endregion READER
+
+    //region ******************* HELPERS ***********************************************************
+
+    private boolean offer(float x, float y, int reserve) {
+        int t = tail.get();
+        if(t - head.get() >= mask + 1 - reserve) return false;
+        int slot = t & mask;
+        points[2 * slot] = x;
+        points[2 * slot + 1] = y;
+        // точка становится видна читателю только после записи координат
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    //endregion HELPERS
+}
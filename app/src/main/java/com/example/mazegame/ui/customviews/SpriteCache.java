@@ -0,0 +1,83 @@
+package com.example.mazegame.ui.customviews;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+import androidx.annotation.DrawableRes;
+
+/**
+ * Спрайты, заранее уменьшенные до размера, в котором они рисуются. Ресурс декодируется
+ * с inSampleSize (в память попадает не больше чем вдвое больше нужного), затем один раз
+ * масштабируется с фильтрацией; onDraw рисует готовый битмап без масштабирования.
+ * Ключ кеша - ресурс и размер, поэтому restart и новый лабиринт того же размера не декодируют заново.
+ */
+public class SpriteCache {
+
+    // несколько спрайтов в паре последних размеров
+    private static final int MAX_ENTRIES = 8;
+
+    private final Resources resources;
+    private final LruCache<Long, Bitmap> cache = new LruCache<Long, Bitmap>(MAX_ENTRIES) {
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+            if(evicted) oldValue.recycle();
+        }
+    };
+
+    public SpriteCache(Resources resources) {
+        this.resources = resources;
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /**
+     * Спрайт, вписанный в квадрат size x size с сохранением пропорций.
+     * @return null, если ресурс не декодируется
+     */
+    public Bitmap get(@DrawableRes int resId, int size) {
+        if(size <= 0) return null;
+        Long key = ((long) resId << 32) | size;
+        Bitmap bitmap = cache.get(key);
+        if(bitmap == null || bitmap.isRecycled()) {
+            bitmap = decode(resId, size);
+            if(bitmap != null) cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /** Освобождает все спрайты; вызывается, когда view отсоединена от окна. */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* HELPERS ***********************************************************
+
+    private Bitmap decode(int resId, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        // масштаб по плотности экрана не нужен: размер в пикселях задаем сами
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, resId, options);
+        if(options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int width = options.outWidth, height = options.outHeight;
+        int sampleSize = 1;
+        while(Math.max(width, height) / (sampleSize * 2) >= size) sampleSize *= 2;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(resources, resId, options);
+        if(decoded == null) return null;
+
+        float scale = (float) size / Math.max(decoded.getWidth(), decoded.getHeight());
+        int scaledWidth = Math.max(1, Math.round(decoded.getWidth() * scale));
+        int scaledHeight = Math.max(1, Math.round(decoded.getHeight() * scale));
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, scaledWidth, scaledHeight, true);
+        if(scaled != decoded) decoded.recycle();
+        return scaled;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,159 @@
+package com.example.mazegame.ui.customviews;
+
+import android.graphics.Path;
+import java.util.Arrays;
+
+/**
+ * След player'а. Точки ближе minDistance отбрасываются, точки на одной прямой схлопываются,
+ * а когда вершин набирается MAX_POINTS, старейшая половина следа отбрасывается. В Path ("живой" след) попадают только
+ * точки с последнего "запекания" - остальное уже нарисовано в кешированном слое.
+ */
+public class TrailPath {
+
+    private static final int MAX_POINTS = 4096;
+    // сколько вершин может накопиться в живом следе до запекания в слой
+    private static final int BAKE_THRESHOLD = 64;
+    // синус допустимого угла, при котором три точки считаются лежащими на одной прямой
+    private static final float COLLINEAR_SIN = 0.035f;
+
+    private final Path livePath = new Path();
+    private float[] points = new float[256];
+    private int count;
+    // points[bakedCount] - первая точка живого следа, все отрезки до нее уже запечены
+    private int bakedCount;
+    private float length, bakedLength;
+    // длина отброшенного начала следа: points[0] лежит на этом расстоянии от его начала
+    private float droppedLength;
+    private float minDistance;
+
+    //region ******************* ACTIONS ***********************************************************
+
+    public void setMinDistance(float minDistance) {
+        this.minDistance = minDistance;
+    }
+
+    public void reset(float x, float y) {
+        clear();
+        points[0] = x;
+        points[1] = y;
+        count = 1;
+        livePath.moveTo(x, y);
+    }
+
+    public void clear() {
+        livePath.reset();
+        count = 0;
+        bakedCount = 0;
+        length = 0;
+        bakedLength = 0;
+        droppedLength = 0;
+    }
+
+    /** @return false, если точка отброшена и живой след не изменился */
+    public boolean add(float x, float y) {
+        if(count == 0) {
+            reset(x, y);
+            return true;
+        }
+
+        float lastX = points[2 * count - 2], lastY = points[2 * count - 1];
+        float dx = x - lastX, dy = y - lastY;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        if(distance < minDistance) return false;
+
+        // последнюю вершину можно сдвинуть, только если она еще не запечена
+        if(count - 1 > bakedCount) {
+            float prevX = points[2 * count - 4], prevY = points[2 * count - 3];
+            float px = lastX - prevX, py = lastY - prevY;
+            float prevDistance = (float) Math.sqrt(px * px + py * py);
+            float cross = px * dy - py * dx;
+            float dot = px * dx + py * dy;
+            if(dot > 0 && Math.abs(cross) <= COLLINEAR_SIN * prevDistance * distance) {
+                float nx = x - prevX, ny = y - prevY;
+                length += (float) Math.sqrt(nx * nx + ny * ny) - prevDistance;
+                points[2 * count - 2] = x;
+                points[2 * count - 1] = y;
+                livePath.setLastPoint(x, y);
+                return true;
+            }
+        }
+
+        if(points.length < 2 * count + 2) points = Arrays.copyOf(points, points.length * 2);
+        points[2 * count] = x;
+        points[2 * count + 1] = y;
+        count++;
+        length += distance;
+        livePath.lineTo(x, y);
+        return true;
+    }
+
+    public boolean needsBake() {
+        return count - 1 - bakedCount >= BAKE_THRESHOLD;
+    }
+
+    /** Живой след нарисован в кешированный слой - начинаем новый с последней точки. */
+    public void markBaked() {
+        bakedCount = count - 1;
+        bakedLength = length;
+        if(count >= MAX_POINTS) dropOldest();
+
+        livePath.rewind();
+        livePath.moveTo(points[2 * count - 2], points[2 * count - 1]);
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public Path getLivePath() {
+        return livePath;
+    }
+
+    /** Длина уже запеченной части - с нее продолжается пунктир живого следа. */
+    public float getBakedLength() {
+        return bakedLength;
+    }
+
+    /** Длина следа до points[0] - фаза пунктира вершин, чтобы он совпал с уже нарисованным. */
+    public float getDroppedLength() {
+        return droppedLength;
+    }
+
+    public int getPointCount() {
+        return count;
+    }
+
+    /** Сколько первых вершин уже запечено (вместе с первой вершиной живого следа). */
+    public int getBakedPointCount() {
+        return count > 0 ? bakedCount + 1 : 0;
+    }
+
+    public float getX(int index) {
+        return points[2 * index];
+    }
+
+    public float getY(int index) {
+        return points[2 * index + 1];
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    /**
+     * Отбрасывает старейшую половину вершин (после запекания, так что все оставшиеся тоже запечены).
+     * Прореживать нельзя: после схлопывания каждая вершина - поворот, и без нее след срезал бы угол сквозь стену.
+     */
+    private void dropOldest() {
+        int dropped = count - MAX_POINTS / 2;
+        for(int i = 1; i <= dropped; i++) {
+            float dx = points[2 * i] - points[2 * i - 2], dy = points[2 * i + 1] - points[2 * i - 1];
+            droppedLength += (float) Math.sqrt(dx * dx + dy * dy);
+        }
+        System.arraycopy(points, 2 * dropped, points, 0, 2 * (count - dropped));
+        count -= dropped;
+        bakedCount -= dropped;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,55 @@
+package com.example.mazegame.ui.customviews;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Передача состояния из одного потока в другой без блокировок: писатель заполняет свой
+ * буфер и публикует его, читатель забирает последний опубликованный. Промежуточные
+ * состояния, которые читатель не успел забрать, пропускаются; ни одна сторона не ждет другую.
+ */
+public class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    // средний буфер опубликован и еще не прочитан
+    private static final int FRESH = 4;
+
+    private final T[] buffers;
+    // индекс среднего буфера и флаг FRESH; обмениваются им писатель и читатель
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // back принадлежит только писателю, front - только читателю
+    private int back = 0, front = 2;
+
+    @SafeVarargs
+    public TripleBuffer(T... buffers) {
+        if(buffers.length != 3) throw new IllegalArgumentException("three buffers expected");
+        this.buffers = buffers;
+    }
+
+    //region ******************* WRITER ************************************************************
+
+    /** Буфер писателя; в нем может лежать старое состояние, его нужно заполнить целиком. */
+    public T getBack() {
+        return buffers[back];
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    //endregion WRITER
+
+    //region ******************* READER ************************************************************
+
+    /** Забирает последнее опубликованное состояние. @return false, если нового не было */
+    public boolean update() {
+        if((middle.get() & FRESH) == 0) return false;
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    public T getFront() {
+        return buffers[front];
+    }
+
+    //endregion READER
+}
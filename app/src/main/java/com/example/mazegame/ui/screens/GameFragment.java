@@ -9,20 +9,40 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import com.example.mazegame.R;
+import com.example.mazegame.core.geometry.WallIndex;
+import com.example.mazegame.core.metrics.Metrics;
 import com.example.mazegame.databinding.GameFragmentBinding;
+import com.example.mazegame.helpers.RuntimeAllocations;
 import com.example.mazegame.helpers.ViewHelper;
 import com.example.mazegame.interfaces.IDialogListener;
 import com.example.mazegame.interfaces.IInteractorListener;
+import com.example.mazegame.interfaces.IMazeView;
 import com.example.mazegame.logic.GameInteractor;
+import java.io.File;
 import java.util.List;
 
 public class GameFragment extends Fragment {
 
     private static final int COLS_COUNT = 4;
     private static final int ROWS_COUNT = 8;
+    private static final String LEVEL_PACK_FILE = "levels.pack";
+    private static final int LEVEL_PACK_SIZE = 1000;
+    // сводка метрик (включаются тапом тремя пальцами) пишется сюда при уходе с экрана
+    private static final String METRICS_FILE = "metrics.txt";
+    // бесконечный лабиринт вместо уровней с финишем
+    private static final boolean ENDLESS_MODE = false;
+    // лабиринт рисуется в SurfaceView отдельным потоком, а не в главном
+    private static final boolean SURFACE_RENDERING = false;
+    // гонка по сети вместо уровней; без RACE_HOST это устройство само поднимает сервер на RACE_PORT
+    private static final boolean RACE_MODE = false;
+    private static final String RACE_HOST = null;
+    private static final int RACE_PORT = 7777;
 
     private GameFragmentBinding binding;
     private GameInteractor interactor;
+    // одна и та же view: для размеров и post и для управления лабиринтом
+    private View mazeView;
+    private IMazeView maze;
 
     //region ******************** OVERRIDE *********************************************************
 
@@ -38,17 +58,46 @@ public class GameFragment extends Fragment {
         init();
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        interactor.exportMetrics(new File(requireContext().getFilesDir(), METRICS_FILE));
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        interactor.release();
+        binding = null;
+        mazeView = null;
+        maze = null;
+    }
+
     //endregion OVERRIDE
 
     //region ********************** INIT ***********************************************************
 
     private void init() {
+        if(SURFACE_RENDERING) {
+            binding.maze.setVisibility(View.GONE);
+            binding.mazeSurface.setVisibility(View.VISIBLE);
+            mazeView = binding.mazeSurface;
+            maze = binding.mazeSurface;
+        }
+        else {
+            mazeView = binding.maze;
+            maze = binding.maze;
+        }
         initInteractor();
         initViews();
     }
 
     private void initInteractor() {
         interactor = new GameInteractor();
+        Metrics.setAllocationSource(new RuntimeAllocations());
+        interactor.setMinCellSize(getResources().getDimensionPixelSize(R.dimen.maze_min_cell_size));
+        interactor.openLevelPack(new File(requireContext().getFilesDir(), LEVEL_PACK_FILE),
+            COLS_COUNT, ROWS_COUNT, LEVEL_PACK_SIZE);
         interactor.setListener(new IInteractorListener() {
             @Override
             public void onSizesReady(int w, int h, int marginStart, int marginTop) {
@@ -56,34 +105,61 @@ public class GameFragment extends Fragment {
                 createMaze();
             }
             @Override
-            public void onMazeReady(int cols, int rows, int cellSize, List<RectF> walls) {
-                binding.maze.start(cols, rows, cellSize, walls);
+            public void onMazeReady(int cols, int rows, int cellSize, List<RectF> walls, WallIndex wallIndex) {
+                if(ENDLESS_MODE) {
+                    maze.startEndless(cols, rows, cellSize, walls, wallIndex);
+                    return;
+                }
+                maze.start(cols, rows, cellSize, walls, wallIndex);
+                if(RACE_MODE) return;
+                // пока играется текущий лабиринт, готовим следующий (уровни из набора готовы и так)
+                if(!interactor.hasLevelPack()) interactor.prefetchMaze(COLS_COUNT, ROWS_COUNT,
+                    mazeView.getWidth(), mazeView.getHeight(), getWallThickness());
+            }
+            @Override
+            public void onWallsChanged(List<RectF> walls, WallIndex wallIndex) {
+                maze.updateWalls(walls, wallIndex);
             }
             @Override
             public void onWallTouch() {
-                binding.maze.stop();
+                maze.stop();
                 interactor.finish();
                 showDialog(() -> {
-                    binding.maze.restart();
+                    // начало бесконечного лабиринта уже выгружено, поэтому начинаем новый
+                    if(ENDLESS_MODE) {
+                        createMaze();
+                        return;
+                    }
+                    maze.restart();
                     interactor.restart();
                 });
             }
             @Override
             public void onFinish() {
-                binding.maze.stop();
+                maze.stop();
                 showDialog(() -> {
                     interactor.restart();
+                    // в гонке лабиринт общий, поэтому проходим его заново
+                    if(RACE_MODE) {
+                        maze.restart();
+                        return;
+                    }
                     createMaze();
                 });
             }
+            @Override
+            public void onRivalsMoved(float[] centers, int count) {
+                maze.setRivals(centers, count);
+            }
         });
     }
 
     private void initViews() {
-        binding.maze
+        maze
             .enableTrail()
             .setDrawables(R.drawable.maze_player, R.drawable.maze_finish)
-            .setMoveListener((playerRect, finishRect) -> interactor.onMove(playerRect, finishRect));
+            .setMoveListener((playerRect, centers, count, finishRect) ->
+                interactor.onMove(playerRect, centers, count, finishRect));
 
         View root = binding.getRoot();
         root.post(() ->
@@ -95,9 +171,26 @@ public class GameFragment extends Fragment {
     //region ********************** HELPERS ********************************************************
 
     private void createMaze() {
-        binding.maze.post(() -> interactor.createMaze(COLS_COUNT, ROWS_COUNT,
-            binding.maze.getWidth(), binding.maze.getHeight(),
-            getResources().getDimensionPixelSize(R.dimen.maze_wall_thickness)));
+        mazeView.post(() -> {
+            if(binding == null) return;
+            if(RACE_MODE) {
+                if(RACE_HOST == null) interactor.hostRace(RACE_PORT, COLS_COUNT, ROWS_COUNT,
+                    mazeView.getWidth(), mazeView.getHeight(), getWallThickness());
+                else interactor.joinRace(RACE_HOST, RACE_PORT);
+                return;
+            }
+            if(ENDLESS_MODE) {
+                interactor.createEndlessMaze(COLS_COUNT, ROWS_COUNT,
+                    mazeView.getWidth(), mazeView.getHeight(), getWallThickness());
+                return;
+            }
+            interactor.createNextLevelAsync(COLS_COUNT, ROWS_COUNT,
+                mazeView.getWidth(), mazeView.getHeight(), getWallThickness());
+        });
+    }
+
+    private int getWallThickness() {
+        return getResources().getDimensionPixelSize(R.dimen.maze_wall_thickness);
     }
 
     private void showDialog(IDialogListener listener) {
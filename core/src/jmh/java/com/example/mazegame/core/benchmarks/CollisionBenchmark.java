@@ -0,0 +1,109 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.Maze;
+import com.example.mazegame.core.MazeBuilder;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.FixedPoint;
+import com.example.mazegame.core.geometry.FixedWallIndex;
+import com.example.mazegame.core.geometry.WallIndex;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Стоимость одной проверки столкновения. Через индекс она не должна зависеть от размера
+ * лабиринта, в отличие от прежнего перебора всех стен (wallTouchedLinear).
+ * sweepFixed - та же проверка на целых числах, которой пользуется MazeEngine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollisionBenchmark {
+
+    private static final int CELL_SIZE = 20;
+    private static final int WALL_THICKNESS = 3;
+    private static final float PLAYER_SIZE = CELL_SIZE * 0.45f;
+    private static final int PROBES = 1024;
+
+    @Param({ "4x8", "50x50", "200x200", "500x500" })
+    public String size;
+
+    private List<Box> walls;
+    private WallIndex wallIndex;
+    private FixedWallIndex fixedIndex;
+    // те же пробы и сдвиги в FixedPoint: left, top, right, bottom, dx, dy
+    private final int[] fixedProbes = new int[PROBES * 6];
+    private final Box[] probes = new Box[PROBES];
+    private final float[] steps = new float[PROBES * 2];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        int cols = Integer.parseInt(parts[0]);
+        int rows = Integer.parseInt(parts[1]);
+        Maze maze = new MazeBuilder().build(cols, rows, CELL_SIZE, WALL_THICKNESS);
+        walls = maze.getWalls();
+        wallIndex = new WallIndex(walls, CELL_SIZE);
+        fixedIndex = maze.getWallIndex();
+
+        Random random = new Random(42);
+        for(int i = 0; i < PROBES; i++) {
+            float x = random.nextFloat() * (cols * CELL_SIZE - PLAYER_SIZE);
+            float y = random.nextFloat() * (rows * CELL_SIZE - PLAYER_SIZE);
+            probes[i] = new Box(x, y, x + PLAYER_SIZE, y + PLAYER_SIZE);
+            // сдвиг за одно касание при быстром свайпе - до половины ячейки
+            steps[2 * i] = (random.nextFloat() - 0.5f) * CELL_SIZE;
+            steps[2 * i + 1] = (random.nextFloat() - 0.5f) * CELL_SIZE;
+
+            fixedProbes[6 * i] = FixedPoint.toFixed(x);
+            fixedProbes[6 * i + 1] = FixedPoint.toFixed(y);
+            fixedProbes[6 * i + 2] = FixedPoint.toFixed(x + PLAYER_SIZE);
+            fixedProbes[6 * i + 3] = FixedPoint.toFixed(y + PLAYER_SIZE);
+            fixedProbes[6 * i + 4] = FixedPoint.toFixed(steps[2 * i]);
+            fixedProbes[6 * i + 5] = FixedPoint.toFixed(steps[2 * i + 1]);
+        }
+    }
+
+    @Benchmark
+    public boolean wallTouched() {
+        return wallIndex.intersects(nextProbe());
+    }
+
+    @Benchmark
+    public boolean wallTouchedLinear() {
+        Box probe = nextProbe();
+        for(Box wall : walls)
+            if(Box.intersects(probe, wall)) return true;
+        return false;
+    }
+
+    @Benchmark
+    public float sweep() {
+        int i = next;
+        Box probe = nextProbe();
+        return wallIndex.sweep(probe.left, probe.top, probe.right, probe.bottom, steps[2 * i], steps[2 * i + 1]);
+    }
+
+    @Benchmark
+    public boolean sweepFixed() {
+        int i = 6 * next;
+        next = (next + 1) & (PROBES - 1);
+        return fixedIndex.sweep(fixedProbes[i], fixedProbes[i + 1], fixedProbes[i + 2], fixedProbes[i + 3],
+            fixedProbes[i + 4], fixedProbes[i + 5]);
+    }
+
+    private Box nextProbe() {
+        Box probe = probes[next];
+        next = (next + 1) & (PROBES - 1);
+        return probe;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import com.example.mazegame.core.geometry.WallGeometry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Генерация лабиринта разными алгоритмами и построение стен в зависимости от размера. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GenerationBenchmark {
+
+    private static final int CELL_SIZE = 20;
+    private static final int WALL_THICKNESS = 3;
+
+    @Param({ "4x8", "100x100", "500x500", "2000x2000" })
+    public String size;
+
+    @Param({ "backtracker", "eller", "kruskal", "wilson", "binary-tree", "sidewinder" })
+    public String algorithm;
+
+    private MazeGenerator generator;
+    private MazeGrid grid, generated;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        int cols = Integer.parseInt(parts[0]);
+        int rows = Integer.parseInt(parts[1]);
+        generator = MazeGenerators.create(algorithm);
+        grid = new MazeGrid(cols, rows);
+        generated = new MazeGrid(cols, rows);
+        generator.generate(generated);
+    }
+
+    @Benchmark
+    public MazeGrid generateMaze() {
+        grid.reset();
+        generator.generate(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public WallGeometry createWalls() {
+        return WallGeometry.build(generated, WALL_THICKNESS, CELL_SIZE);
+    }
+}
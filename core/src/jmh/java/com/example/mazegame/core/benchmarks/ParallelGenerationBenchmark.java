@@ -0,0 +1,65 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.BacktrackerGenerator;
+import com.example.mazegame.core.generation.TiledGenerator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Плиточная генерация на 1, 2, 4 и 8 потоках против однопоточного рекурсивного возврата
+ * (backtracker от threads не зависит и нужен как точка отсчета).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelGenerationBenchmark {
+
+    @Param({ "2000x2000", "4000x4000" })
+    public String size;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private ForkJoinPool pool;
+    private TiledGenerator tiled;
+    private BacktrackerGenerator backtracker;
+    private MazeGrid grid;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        grid = new MazeGrid(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        pool = new ForkJoinPool(threads);
+        tiled = new TiledGenerator(pool, TiledGenerator.DEFAULT_TILE_SIZE);
+        backtracker = new BacktrackerGenerator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MazeGrid tiled() {
+        grid.reset();
+        tiled.generate(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public MazeGrid backtracker() {
+        grid.reset();
+        backtracker.generate(grid);
+        return grid;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.race.RaceClient;
+import com.example.mazegame.core.race.RaceServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Сервер гонки на loopback: players клиентов в одном потоке бенчмарка присылают по кадру MOVE
+ * из SAMPLES точек (качание внутри стартовой ячейки, стены не задеваются), и операция
+ * заканчивается, когда сервер проверил их все. Время - на такой круг всех игроков,
+ * вместе с клиентской стороной и тиками рассылки.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RaceBenchmark {
+
+    private static final int SAMPLES = 4;
+
+    @Param({ "100", "300" })
+    public int players;
+
+    private RaceServer server;
+    private Thread serverThread;
+    private RaceClient[] clients;
+    private final float[] centers = new float[2 * SAMPLES];
+    private long sent;
+    private int round;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new RaceServer(new InetSocketAddress("127.0.0.1", 0), 30, 30, 40, 4, 18f, "backtracker", 42L);
+        serverThread = new Thread(server);
+        serverThread.start();
+
+        final int[] welcomed = new int[1];
+        RaceClient.Listener listener = new RaceClient.Listener() {
+            @Override
+            public void onWelcome(RaceClient client) {
+                welcomed[0]++;
+            }
+
+            @Override
+            public void onTick(RaceClient client) { }
+        };
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        clients = new RaceClient[players];
+        for(int i = 0; i < players; i++) {
+            clients[i] = new RaceClient(listener);
+            clients[i].connect(address);
+            clients[i].flush();
+        }
+        while(welcomed[0] < players) poll();
+        sent = server.getAcceptedSamples();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for(RaceClient client : clients) client.close();
+        server.close();
+        serverThread.join();
+    }
+
+    @Benchmark
+    public long moveAll() throws IOException {
+        float offset = (round++ & 1) == 0 ? 2f : -2f;
+        for(int k = 0; k < SAMPLES; k++) {
+            centers[2 * k] = 20f + offset * (k + 1) / SAMPLES;
+            centers[2 * k + 1] = 20f - offset * (k + 1) / SAMPLES;
+        }
+        for(RaceClient client : clients) {
+            client.move(centers, SAMPLES);
+            client.flush();
+        }
+        sent += (long) players * SAMPLES;
+        // тики копятся во входных буферах клиентов, их нужно вычитывать, иначе сервер упрется в запись
+        while(server.getAcceptedSamples() < sent) {
+            poll();
+            Thread.yield();
+        }
+        return sent;
+    }
+
+    private void poll() throws IOException {
+        for(RaceClient client : clients) client.poll();
+    }
+}
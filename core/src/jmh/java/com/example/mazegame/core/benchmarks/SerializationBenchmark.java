@@ -0,0 +1,93 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import com.example.mazegame.core.io.MazeFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Сохранение и загрузка лабиринта в MazeFormat в сравнении с повторной генерацией по seed'у. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({ "100x100", "1000x1000" })
+    public String size;
+
+    @Param({ "backtracker" })
+    public String algorithm;
+
+    private MazeGenerator generator;
+    private MazeGrid grid, generated;
+    private ByteBuffer buffer;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = size.split("x");
+        int cols = Integer.parseInt(parts[0]);
+        int rows = Integer.parseInt(parts[1]);
+        generator = MazeGenerators.create(algorithm);
+        grid = new MazeGrid(cols, rows);
+        generated = new MazeGrid(cols, rows);
+        generator.setSeed(SEED);
+        generator.generate(generated);
+
+        buffer = ByteBuffer.allocateDirect(MazeFormat.encodedSize(cols, rows));
+        file = File.createTempFile("maze", ".bin");
+        MazeFormat.save(file, generated, SEED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        buffer.clear();
+        MazeFormat.write(buffer, generated, SEED);
+        return buffer;
+    }
+
+    @Benchmark
+    public MazeGrid decode() {
+        buffer.clear();
+        MazeFormat.write(buffer, generated, SEED);
+        buffer.flip();
+        MazeFormat.readHeader(buffer);
+        MazeFormat.readCells(buffer, grid);
+        return grid;
+    }
+
+    @Benchmark
+    public MazeGrid loadFromDisk() throws IOException {
+        ByteBuffer loaded = MazeFormat.load(file);
+        MazeFormat.readHeader(loaded);
+        MazeFormat.readCells(loaded, grid);
+        return grid;
+    }
+
+    @Benchmark
+    public MazeGrid regenerate() {
+        grid.reset();
+        generator.setSeed(SEED);
+        generator.generate(grid);
+        return grid;
+    }
+}
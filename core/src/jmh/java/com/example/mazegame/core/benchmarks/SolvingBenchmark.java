@@ -0,0 +1,52 @@
+package com.example.mazegame.core.benchmarks;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import com.example.mazegame.core.solving.MazeSolver;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Поле расстояний и кратчайший путь от угла до угла в зависимости от размера лабиринта. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolvingBenchmark {
+
+    @Param({ "4x8", "100x100", "500x500", "2000x2000", "4000x4000" })
+    public String size;
+
+    @Param({ "backtracker", "kruskal" })
+    public String algorithm;
+
+    private final MazeSolver solver = new MazeSolver();
+    private MazeGrid grid;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        grid = new MazeGrid(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        MazeGenerator generator = MazeGenerators.create(algorithm);
+        generator.setSeed(42);
+        generator.generate(grid);
+    }
+
+    @Benchmark
+    public int distanceField() {
+        solver.solve(grid, 0);
+        return solver.getFarthestCell();
+    }
+
+    @Benchmark
+    public int shortestPath() {
+        solver.solve(grid, 0);
+        return solver.findPath(grid, grid.size() - 1);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.mazegame.core;
+
+import com.example.mazegame.core.generation.EllerGenerator;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.FixedWallIndex;
+import com.example.mazegame.core.geometry.WallGeometry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Бесконечный вниз лабиринт. Строки генерируются алгоритмом Эллера полосами по bandRows
+ * по мере того, как player спускается; полосы выше него выгружаются вместе со стенами.
+ * В памяти остается не больше bandsBehind + 1 + bandsAhead полос, как бы далеко ни ушел
+ * player, а индекс столкновений строится только по этим полосам.
+ * Не потокобезопасен, но update можно вызывать в фоновом потоке: стены и индекс каждый раз
+ * строятся заново, и прежние, отданные через getWalls / getWallIndex, не меняются.
+ */
+public class EndlessMaze {
+
+    private static final byte OPEN_RIGHT = 1;
+    private static final byte OPEN_DOWN = 1 << 1;
+
+    private final EllerGenerator generator = new EllerGenerator();
+    private final int cols, bandRows, cellSize, wallThickness;
+    private final int bandsAhead, bandsBehind;
+    private final ArrayDeque<Band> bands = new ArrayDeque<>();
+    // проходы вниз из последней сгенерированной строки - верхняя линия следующей полосы
+    private final boolean[] openAbove;
+    // выгруженная полоса, ее массивы переиспользуются для следующей
+    private Band spare;
+    private int nextBand;
+
+    private List<Box> walls;
+    private FixedWallIndex wallIndex;
+
+    public EndlessMaze(int cols, int bandRows, int cellSize, int wallThickness, int bandsAhead, int bandsBehind) {
+        this.cols = cols;
+        this.bandRows = bandRows;
+        this.cellSize = cellSize;
+        this.wallThickness = wallThickness;
+        this.bandsAhead = bandsAhead;
+        this.bandsBehind = bandsBehind;
+        openAbove = new boolean[cols];
+        generator.begin(cols);
+        update(0f);
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /**
+     * Догенерирует полосы ниже player'а и выгружает полосы выше него.
+     * @param playerY центр player'а по вертикали, в пикселях
+     * @return true, если набор полос (а значит и стены, и индекс) изменился
+     */
+    public boolean update(float playerY) {
+        int playerBand = getBand(playerY);
+        boolean changed = false;
+
+        while(nextBand <= playerBand + bandsAhead) {
+            bands.addLast(generateBand());
+            changed = true;
+        }
+        while(bands.peekFirst().index < playerBand - bandsBehind) {
+            spare = bands.removeFirst();
+            changed = true;
+        }
+
+        if(changed) rebuildWalls();
+        return changed;
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    /** Изменит ли update(playerY) набор полос - без генерации, ее можно проверять на каждом ходу. */
+    public boolean needsUpdate(float playerY) {
+        int playerBand = getBand(playerY);
+        return nextBand <= playerBand + bandsAhead || bands.peekFirst().index < playerBand - bandsBehind;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getBandRows() {
+        return bandRows;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getWallThickness() {
+        return wallThickness;
+    }
+
+    /** Стены всех загруженных полос, сверху и снизу они закрыты сплошной стеной. */
+    public List<Box> getWalls() {
+        return walls;
+    }
+
+    public FixedWallIndex getWallIndex() {
+        return wallIndex;
+    }
+
+    /** Первая строка, которая еще в памяти. */
+    public int getFirstRow() {
+        return bands.peekFirst().firstRow;
+    }
+
+    /** Строка сразу за последней сгенерированной. */
+    public int getEndRow() {
+        return nextBand * bandRows;
+    }
+
+    public int getBandCount() {
+        return bands.size();
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    private int getBand(float playerY) {
+        return Math.max(0, (int) (playerY / cellSize)) / bandRows;
+    }
+
+    private Band generateBand() {
+        Band band = spare != null ? spare : new Band(cols, bandRows);
+        spare = null;
+        band.index = nextBand++;
+        band.firstRow = band.index * bandRows;
+        System.arraycopy(openAbove, 0, band.openAbove, 0, cols);
+
+        for(int j = 0; j < bandRows; j++)
+            generator.nextRow(false, (row, openRight, openDown) -> {
+                int offset = (row - band.firstRow) * cols;
+                for(int i = 0; i < cols; i++)
+                    band.cells[offset + i] = (byte) ((openRight[i] ? OPEN_RIGHT : 0) | (openDown[i] ? OPEN_DOWN : 0));
+            });
+        int last = (bandRows - 1) * cols;
+        for(int i = 0; i < cols; i++) openAbove[i] = (band.cells[last + i] & OPEN_DOWN) != 0;
+
+        band.walls = WallGeometry.build(band, wallThickness, cellSize, band.firstRow * cellSize).getWalls();
+        return band;
+    }
+
+    private void rebuildWalls() {
+        int size = 2;
+        for(Band band : bands) size += band.walls.size();
+        List<Box> walls = new ArrayList<>(size);
+        for(Band band : bands) walls.addAll(band.walls);
+
+        // выше первой полосы и ниже последней ничего нет - закрываем их, чтобы player не вышел
+        float half = wallThickness / 2f;
+        float right = cols * cellSize + half;
+        if(bands.peekFirst().index > 0) {
+            float top = getFirstRow() * cellSize - half;
+            walls.add(new Box(-half, top, right, top + wallThickness));
+        }
+        float bottom = getEndRow() * cellSize - half;
+        walls.add(new Box(-half, bottom, right, bottom + wallThickness));
+
+        this.walls = walls;
+        wallIndex = new FixedWallIndex(walls, cellSize);
+    }
+
+    //endregion HELPERS
+
+    /** Полоса из bandRows строк: по байту на ячейку (проходы вправо и вниз). */
+    private static final class Band implements WallGeometry.Source {
+        private final int cols, rows;
+        private final byte[] cells;
+        private final boolean[] openAbove;
+        private int index, firstRow;
+        private List<Box> walls;
+
+        private Band(int cols, int rows) {
+            this.cols = cols;
+            this.rows = rows;
+            cells = new byte[cols * rows];
+            openAbove = new boolean[cols];
+        }
+
+        @Override
+        public int getCols() {
+            return cols;
+        }
+
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        // нижняя линия полосы - верхняя линия следующей, ее строит следующая полоса
+        @Override
+        public boolean hasHorizontalWall(int col, int line) {
+            if(line == rows) return false;
+            return line == 0 ? !openAbove[col] : (cells[(line - 1) * cols + col] & OPEN_DOWN) == 0;
+        }
+
+        @Override
+        public boolean hasVerticalWall(int line, int row) {
+            return line == 0 || line == cols || (cells[row * cols + line - 1] & OPEN_RIGHT) == 0;
+        }
+    }
+}
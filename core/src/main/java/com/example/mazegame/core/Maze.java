@@ -0,0 +1,102 @@
+package com.example.mazegame.core;
+
+import com.example.mazegame.core.generation.GenerationProfile;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.FixedWallIndex;
+import com.example.mazegame.core.io.MazeFormat;
+import com.example.mazegame.core.solving.MazeSolver;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/** Готовый к игре лабиринт: стены в пикселях и индекс для проверки столкновений. */
+public class Maze {
+
+    /** Сторона квадрата player'а относительно ячейки: по нему проверяют стены и клиент, и сервер гонки. */
+    public static final float PLAYER_PERCENT_TO_CELL = 0.45f;
+
+    private final int cols, rows, cellSize, wallThickness;
+    private final List<Box> walls;
+    private final FixedWallIndex wallIndex;
+    private final int rawWallCount;
+    private final GenerationProfile profile;
+    private final long seed;
+    // ячейки в MazeFormat (2 бита на ячейку) - из них решение строится, только когда его попросят
+    private final ByteBuffer encoded;
+    private int[] solution;
+
+    public Maze(int cols, int rows, int cellSize, int wallThickness, List<Box> walls, FixedWallIndex wallIndex,
+                int rawWallCount, GenerationProfile profile, long seed, ByteBuffer encoded) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cellSize = cellSize;
+        this.wallThickness = wallThickness;
+        this.walls = walls;
+        this.wallIndex = wallIndex;
+        this.rawWallCount = rawWallCount;
+        this.profile = profile;
+        this.seed = seed;
+        this.encoded = encoded;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getWallThickness() {
+        return wallThickness;
+    }
+
+    public List<Box> getWalls() {
+        return walls;
+    }
+
+    public FixedWallIndex getWallIndex() {
+        return wallIndex;
+    }
+
+    /** Сколько rect'ов было бы без слияния стен (см. WallGeometry.getRawCount). */
+    public int getRawWallCount() {
+        return rawWallCount;
+    }
+
+    public GenerationProfile getProfile() {
+        return profile;
+    }
+
+    /** Тот же генератор с этим seed'ом и размерами построит этот же лабиринт. */
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Лабиринт в MazeFormat с заголовком; позиция и limit буфера не меняются. */
+    public ByteBuffer getEncoded() {
+        return encoded.duplicate();
+    }
+
+    /**
+     * Кратчайший путь от стартовой ячейки (0, 0) до финишной (cols - 1, rows - 1), ячейки col + row * cols.
+     * Первый вызов ищет его в потоке вызывающего (на 4000x4000 - доли секунды), дальше путь
+     * берется готовым; поле расстояний поиска не сохраняется.
+     */
+    public synchronized int[] getSolution() {
+        if(solution == null) {
+            ByteBuffer in = getEncoded();
+            MazeFormat.readHeader(in);
+            MazeGrid grid = new MazeGrid(cols, rows);
+            MazeFormat.readCells(in, grid);
+            MazeSolver solver = new MazeSolver();
+            solver.solve(grid, 0);
+            solution = Arrays.copyOf(solver.getPath(), solver.findPath(grid, grid.size() - 1));
+        }
+        return solution;
+    }
+}
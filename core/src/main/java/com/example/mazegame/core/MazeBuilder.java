@@ -0,0 +1,83 @@
+package com.example.mazegame.core;
+
+import com.example.mazegame.core.generation.BacktrackerGenerator;
+import com.example.mazegame.core.generation.FastRandom;
+import com.example.mazegame.core.generation.GenerationProfile;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.geometry.FixedWallIndex;
+import com.example.mazegame.core.geometry.WallGeometry;
+import com.example.mazegame.core.io.MazeFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Генерирует (или загружает) лабиринт и готовит для него стены и индекс столкновений. */
+public class MazeBuilder {
+
+    private static final String LOADED = "file";
+
+    // буферы генератора переиспользуются между лабиринтами, чтобы шаг генерации не выделял память
+    private MazeGenerator generator = new BacktrackerGenerator();
+    private MazeGrid grid;
+    // seed'ы для лабиринтов, которые не просили воспроизвести
+    private final FastRandom seeds = new FastRandom();
+
+    public synchronized void setGenerator(MazeGenerator generator) {
+        this.generator = generator;
+    }
+
+    /** Лабиринт со случайным seed'ом; seed можно узнать через Maze.getSeed. */
+    public synchronized Maze build(int cols, int rows, int cellSize, int wallThickness) {
+        return build(cols, rows, cellSize, wallThickness, seeds.nextLong());
+    }
+
+    // может вызываться из разных потоков, а grid и generator общие
+    public synchronized Maze build(int cols, int rows, int cellSize, int wallThickness, long seed) {
+        // создаем матрицу ячеек (все стены на месте); при тех же размерах берем прежнюю
+        prepareGrid(cols, rows);
+        generator.setSeed(seed);
+        GenerationProfile profile = GenerationProfile.measure(generator, grid);
+        // сетка переиспользуется под следующий лабиринт, поэтому Maze получает свою упакованную копию
+        ByteBuffer encoded = ByteBuffer.allocate(MazeFormat.encodedSize(cols, rows));
+        MazeFormat.write(encoded, grid, seed);
+        encoded.flip();
+        return createMaze(cellSize, wallThickness, profile, seed, encoded);
+    }
+
+    /** Лабиринт, сохраненный через MazeFormat; время загрузки попадает в профиль. */
+    public synchronized Maze load(File file, int cellSize, int wallThickness) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = MazeFormat.load(file);
+        return decode(buffer, cellSize, wallThickness, start);
+    }
+
+    /** То же, что load, но из уже прочитанного буфера (с его текущей позиции). */
+    public synchronized Maze decode(ByteBuffer buffer, int cellSize, int wallThickness) {
+        return decode(buffer, cellSize, wallThickness, System.nanoTime());
+    }
+
+    private Maze decode(ByteBuffer buffer, int cellSize, int wallThickness, long start) {
+        int offset = buffer.position();
+        MazeFormat.Header header = MazeFormat.readHeader(buffer);
+        prepareGrid(header.getCols(), header.getRows());
+        MazeFormat.readCells(buffer, grid);
+        int encodedSize = MazeFormat.encodedSize(header.getCols(), header.getRows());
+        GenerationProfile profile = new GenerationProfile(LOADED, System.nanoTime() - start, grid.size(), encodedSize);
+        // уже прочитанные байты лабиринта не копируются: Maze держит срез того же буфера
+        ByteBuffer encoded = buffer.duplicate();
+        encoded.limit(offset + encodedSize).position(offset);
+        return createMaze(cellSize, wallThickness, profile, header.getSeed(), encoded.slice().asReadOnlyBuffer());
+    }
+
+    private void prepareGrid(int cols, int rows) {
+        if(grid == null || grid.getCols() != cols || grid.getRows() != rows) grid = new MazeGrid(cols, rows);
+        else grid.reset();
+    }
+
+    private Maze createMaze(int cellSize, int wallThickness, GenerationProfile profile, long seed, ByteBuffer encoded) {
+        // превращаем карту стен в rect'ы
+        WallGeometry geometry = WallGeometry.build(grid, wallThickness, cellSize);
+        return new Maze(grid.getCols(), grid.getRows(), cellSize, wallThickness, geometry.getWalls(),
+            new FixedWallIndex(geometry.getWalls(), cellSize), geometry.getRawCount(), profile, seed, encoded);
+    }
+}
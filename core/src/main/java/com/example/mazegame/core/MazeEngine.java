@@ -0,0 +1,225 @@
+package com.example.mazegame.core;
+
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.FixedPoint;
+import com.example.mazegame.core.geometry.FixedWallIndex;
+
+/**
+ * Игровая логика одного лабиринта: движение player'а с проверкой столкновений и финиша.
+ * Путь проверяется непрерывно, поэтому быстрый свайп не "перепрыгивает" тонкие стены.
+ * Положение player'а внутри хранится в FixedPoint: столкновения считаются точно и без
+ * выделения памяти, а наружу отдается уже округленное до 1/256 пикселя.
+ */
+public class MazeEngine {
+
+    public static final int MOVE_OK = 0;
+    public static final int MOVE_WALL = 1;
+    public static final int MOVE_FINISH = 2;
+
+    private Maze maze;
+    private FixedWallIndex wallIndex;
+    private boolean finished;
+    // последнее проверенное положение player'а (левый верхний угол), от него считается путь до нового
+    private int lastLeft, lastTop;
+    private boolean hasLastPosition;
+    // текущее положение и размер player'а во время move
+    private int left, top, width, height;
+    // свободная область (см. FixedWallIndex.freeRegion) вокруг player'а размером regionWidth x regionHeight;
+    // пока весь путь внутри нее, стены не проверяются
+    private final int[] region = new int[4];
+    private boolean hasRegion;
+    private int regionWidth, regionHeight;
+    private boolean lastMoveFast;
+    private long moveCount, fastMoveCount;
+    private int reached;
+    private long wallTests;
+
+    //region ******************* ACTIONS ***********************************************************
+
+    public void setMaze(Maze maze) {
+        this.maze = maze;
+        wallIndex = maze != null ? maze.getWallIndex() : null;
+        hasLastPosition = false;
+        hasRegion = false;
+    }
+
+    /**
+     * Подменяет стены, не сбрасывая положение player'а: бесконечный лабиринт
+     * догружает и выгружает полосы прямо во время игры.
+     */
+    public void setWalls(FixedWallIndex wallIndex) {
+        maze = null;
+        this.wallIndex = wallIndex;
+        hasRegion = false;
+    }
+
+    public void restart() {
+        finished = false;
+        hasLastPosition = false;
+    }
+
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Ведет player'а от его положения через центры (centers[2 * i], centers[2 * i + 1]).
+     * Стены вокруг всего пути собираются одним запросом к индексу, затем по ним проверяется
+     * каждый отрезок. При касании стены player остается в точке контакта.
+     * @return MOVE_OK, MOVE_WALL или MOVE_FINISH; после стены или финиша игра завершается
+     */
+    public int move(Box player, float[] centers, int count, Box finish) {
+        reached = 0;
+        wallTests = 0;
+        lastMoveFast = false;
+        if(finished || wallIndex == null) return MOVE_OK;
+        long testsBefore = wallIndex.getTestCount();
+
+        left = FixedPoint.toFixed(player.left);
+        top = FixedPoint.toFixed(player.top);
+        width = FixedPoint.toFixed(player.width());
+        height = FixedPoint.toFixed(player.height());
+        moveCount++;
+        boolean touchedWall = false;
+        if(moveInsideRegion(centers, count)) {
+            lastMoveFast = true;
+            fastMoveCount++;
+        }
+        else {
+            touchedWall = sweepToWall();
+            if(!touchedWall && count > 0) {
+                reached = moveAlong(centers, count);
+                touchedWall = reached < count;
+            }
+            if(!touchedWall) updateRegion();
+        }
+        lastLeft = left;
+        lastTop = top;
+        player.offsetTo(FixedPoint.toFloat(left), FixedPoint.toFloat(top));
+
+        boolean reachedFinish = !touchedWall && finish.contains(player.centerX(), player.centerY());
+
+        wallTests = wallIndex.getTestCount() - testsBefore;
+        if(touchedWall || reachedFinish) finished = true;
+        return touchedWall ? MOVE_WALL : reachedFinish ? MOVE_FINISH : MOVE_OK;
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** Сколько точек пути прошел player при последнем вызове move. */
+    public int getReached() {
+        return reached;
+    }
+
+    /** Прошел ли последний move целиком внутри свободной области, без проверки стен. */
+    public boolean isLastMoveFast() {
+        return lastMoveFast;
+    }
+
+    /** Доля вызовов move, обошедшихся без проверки стен, с создания движка. */
+    public float getFastMoveFraction() {
+        return moveCount > 0 ? (float) fastMoveCount / moveCount : 0f;
+    }
+
+    /** Сколько стен проверено за последний вызов move. */
+    public long getWallTests() {
+        return wallTests;
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    /**
+     * Быстрый путь: область выпуклая, поэтому если в ней все точки пути (прошлое положение,
+     * текущее и центры), то и отрезки между ними стен не касаются.
+     */
+    private boolean moveInsideRegion(float[] centers, int count) {
+        if(!hasRegion || !hasLastPosition || width != regionWidth || height != regionHeight) return false;
+        if(!insideRegion(lastLeft, lastTop) || !insideRegion(left, top)) return false;
+
+        int halfW = width >> 1, halfH = height >> 1;
+        int x = left, y = top;
+        for(int i = 0; i < count; i++) {
+            x = FixedPoint.toFixed(centers[2 * i]) - halfW;
+            y = FixedPoint.toFixed(centers[2 * i + 1]) - halfH;
+            if(!insideRegion(x, y)) return false;
+        }
+        left = x;
+        top = y;
+        reached = count;
+        return true;
+    }
+
+    private boolean insideRegion(int x, int y) {
+        return x >= region[0] && y >= region[1] && x + width <= region[2] && y + height <= region[3];
+    }
+
+    /** Область пересчитывается, только когда player из нее вышел. */
+    private void updateRegion() {
+        if(hasRegion && width == regionWidth && height == regionHeight && insideRegion(left, top)) return;
+        hasRegion = wallIndex.freeRegion(left, top, left + width, top + height, wallIndex.getBucketSize(), region);
+        regionWidth = width;
+        regionHeight = height;
+    }
+
+    /** Путь от прошлого проверенного положения до текущего (например, после ACTION_DOWN). */
+    private boolean sweepToWall() {
+        if(!hasLastPosition) {
+            lastLeft = left;
+            lastTop = top;
+            hasLastPosition = true;
+        }
+
+        int dx = left - lastLeft, dy = top - lastTop;
+        if(!wallIndex.sweep(lastLeft, lastTop, lastLeft + width, lastTop + height, dx, dy)) return false;
+        left = lastLeft + travel(dx);
+        top = lastTop + travel(dy);
+        return true;
+    }
+
+    private int moveAlong(float[] centers, int count) {
+        int halfW = width >> 1, halfH = height >> 1;
+        int minX = left, maxX = left;
+        int minY = top, maxY = top;
+        for(int i = 0; i < count; i++) {
+            int x = FixedPoint.toFixed(centers[2 * i]) - halfW, y = FixedPoint.toFixed(centers[2 * i + 1]) - halfH;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        int candidates = wallIndex.gather(minX, minY, maxX + width, maxY + height);
+
+        int reached = 0;
+        for(; reached < count; reached++) {
+            int dx = FixedPoint.toFixed(centers[2 * reached]) - halfW - left;
+            int dy = FixedPoint.toFixed(centers[2 * reached + 1]) - halfH - top;
+            if(wallIndex.sweepGathered(candidates, left, top, left + width, top + height, dx, dy)) {
+                left += travel(dx);
+                top += travel(dy);
+                break;
+            }
+            left += dx;
+            top += dy;
+        }
+        return reached;
+    }
+
+    /** Часть сдвига d до касания; округляется к нулю, поэтому player не заходит в стену. */
+    private int travel(int d) {
+        return (int) (d * wallIndex.getHitNum() / wallIndex.getHitDen());
+    }
+
+    //endregion HELPERS
+}
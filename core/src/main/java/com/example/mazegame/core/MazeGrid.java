@@ -0,0 +1,136 @@
+package com.example.mazegame.core;
+
+import java.util.Arrays;
+
+/**
+ * Компактная модель лабиринта: один байт на ячейку, ячейка адресуется как col + row * cols.
+ * Младшие 4 бита - стены (по направлениям DIR_*), затем флаг посещения и 2 бита направления
+ * на "родительскую" ячейку, по которым генератор возвращается назад без отдельного стека.
+ */
+public class MazeGrid {
+
+    public static final int DIR_LEFT = 0;
+    public static final int DIR_TOP = 1;
+    public static final int DIR_RIGHT = 2;
+    public static final int DIR_BOTTOM = 3;
+
+    private static final int WALLS_MASK = 0b1111;
+    private static final int VISITED = 1 << 4;
+    private static final int PARENT_SHIFT = 5;
+    private static final int PARENT_MASK = 0b11 << PARENT_SHIFT;
+
+    private final int cols, rows;
+    private final byte[] cells;
+
+    public MazeGrid(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        cells = new byte[cols * rows];
+        reset();
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /** Возвращает все стены на место и снимает отметки о посещении. */
+    public void reset() {
+        Arrays.fill(cells, (byte) WALLS_MASK);
+    }
+
+    /** Убирает стену между ячейкой и ее соседом по направлению dir (с обеих сторон). */
+    public void carve(int cell, int dir) {
+        int next = neighbour(cell, dir);
+        cells[cell] &= ~(1 << dir);
+        cells[next] &= ~(1 << opposite(dir));
+    }
+
+    /**
+     * Переносит стены всей сетки from в прямоугольник этой сетки с левым верхним углом (col, row).
+     * Внешний контур from замкнут, поэтому и прямоугольник остается отделен от соседей стенами;
+     * отметки о посещении и направления на родителя не переносятся.
+     */
+    public void copyWalls(MazeGrid from, int col, int row) {
+        int width = from.cols;
+        for(int j = 0, source = 0; j < from.rows; j++, source += width) {
+            int target = index(col, row + j);
+            for(int i = 0; i < width; i++) cells[target + i] = (byte) (from.cells[source + i] & WALLS_MASK);
+        }
+    }
+
+    public void visit(int cell) {
+        cells[cell] |= VISITED;
+    }
+
+    public void setParent(int cell, int dir) {
+        cells[cell] = (byte) ((cells[cell] & ~PARENT_MASK) | (dir << PARENT_SHIFT));
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    public int index(int col, int row) {
+        return col + row * cols;
+    }
+
+    public int col(int cell) {
+        return cell % cols;
+    }
+
+    public int row(int cell) {
+        return cell / cols;
+    }
+
+    /** Все стены ячейки битовой маской: бит 1 << dir. */
+    public int walls(int cell) {
+        return cells[cell] & WALLS_MASK;
+    }
+
+    public boolean hasWall(int cell, int dir) {
+        return (cells[cell] & (1 << dir)) != 0;
+    }
+
+    public boolean isVisited(int cell) {
+        return (cells[cell] & VISITED) != 0;
+    }
+
+    public int parent(int cell) {
+        return (cells[cell] & PARENT_MASK) >> PARENT_SHIFT;
+    }
+
+    /** Есть ли у ячейки сосед по направлению dir (не выходим ли за границы). */
+    public boolean hasNeighbour(int cell, int dir) {
+        switch(dir) {
+            case DIR_LEFT: return cell % cols > 0;
+            case DIR_TOP: return cell >= cols;
+            case DIR_RIGHT: return cell % cols < cols - 1;
+            default: return cell < cells.length - cols;
+        }
+    }
+
+    public int neighbour(int cell, int dir) {
+        switch(dir) {
+            case DIR_LEFT: return cell - 1;
+            case DIR_TOP: return cell - cols;
+            case DIR_RIGHT: return cell + 1;
+            default: return cell + cols;
+        }
+    }
+
+    public static int opposite(int dir) {
+        return dir ^ 2;
+    }
+
+    //endregion GETTERS
+}
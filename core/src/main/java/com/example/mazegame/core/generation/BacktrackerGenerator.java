@@ -0,0 +1,77 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Генерация лабиринта "рекурсивным возвратом" (поиск в глубину) поверх MazeGrid.
+ * Буферы переиспользуются между вызовами, поэтому экземпляр нельзя делить между потоками.
+ */
+public class BacktrackerGenerator implements MazeGenerator {
+
+    private final FastRandom random = new FastRandom();
+    private final int[] pendingDirs = new int[4];
+
+    @Override
+    public String getName() {
+        return "backtracker";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int currentCell = grid.index(0, 0);
+        int steps = 0;
+        // проходим по всем ячейкам и генерируем лабиринт. Для каждой ячейки берем случайного
+        // "соседа" и убираем стену между этими ячейками. Каждая ячейка может быть "соседом" только
+        // один раз, чтобы не было лишних ветвлений. Если зашли в тупик (у ячейки нет необработанных
+        // соседей), возвращаемся обратно к "родительской" ячейке. Как только найдем ячейку, у которой
+        // есть необработанный сосед, продолжим обработку ячеек по тому же принципу и таким образом
+        // начнем создавать очередную ветку лабиринта. Эта логика будет повторяться, пока не
+        // останется необработанных ячеек (из очереднего тупика вернемся к первой ячейке).
+        // Вместо стека направление на родителя хранится в самой ячейке.
+        grid.visit(currentCell);
+        while(true) {
+            Cancellation.check(++steps);
+
+            // получаем соседнюю ячейку, которую еще не успели обработать
+            int dir = getPendingNeighbour(grid, currentCell);
+            if(dir >= 0) {
+                // удаляем стены между соседними ячейками
+                int nextCell = grid.neighbour(currentCell, dir);
+                grid.carve(currentCell, dir);
+                grid.setParent(nextCell, MazeGrid.opposite(dir));
+                grid.visit(nextCell);
+                currentCell = nextCell;
+            }
+            else if(currentCell == 0) break;
+            else currentCell = grid.neighbour(currentCell, grid.parent(currentCell));
+        }
+    }
+
+    /** Стек возврата хранится в самой сетке (направление на родителя), доп. памяти не нужно. */
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        return 0;
+    }
+
+    //region ******************* HELPERS ***********************************************************
+
+    /** @return направление на случайного необработанного соседа или -1, если таких нет */
+    private int getPendingNeighbour(MazeGrid grid, int cell) {
+        int pendingCount = 0;
+        for(int dir = MazeGrid.DIR_LEFT; dir <= MazeGrid.DIR_BOTTOM; dir++)
+            if(isPending(grid, cell, dir)) pendingDirs[pendingCount++] = dir;
+
+        return pendingCount > 0 ? pendingDirs[random.nextInt(pendingCount)] : -1;
+    }
+
+    private boolean isPending(MazeGrid grid, int cell, int dir) {
+        return grid.hasNeighbour(cell, dir) && !grid.isVisited(grid.neighbour(cell, dir));
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,38 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * "Двоичное дерево": из каждой ячейки проход вверх или влево. Самый быстрый и без доп. памяти,
+ * но верхняя строка и левый столбец всегда сплошные коридоры.
+ */
+public class BinaryTreeGenerator implements MazeGenerator {
+
+    private final FastRandom random = new FastRandom();
+
+    @Override
+    public String getName() {
+        return "binary-tree";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        for(int cell = 0; cell < grid.size(); cell++) {
+            Cancellation.check(cell + 1);
+            boolean canUp = grid.hasNeighbour(cell, MazeGrid.DIR_TOP);
+            boolean canLeft = grid.hasNeighbour(cell, MazeGrid.DIR_LEFT);
+            if(canUp && (!canLeft || random.nextInt(2) == 0)) grid.carve(cell, MazeGrid.DIR_TOP);
+            else if(canLeft) grid.carve(cell, MazeGrid.DIR_LEFT);
+        }
+    }
+
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        return 0;
+    }
+}
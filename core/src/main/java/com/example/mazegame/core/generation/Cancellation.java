@@ -0,0 +1,14 @@
+package com.example.mazegame.core.generation;
+
+import java.util.concurrent.CancellationException;
+
+/** Генерация может идти в фоне; раз в несколько тысяч шагов проверяем, не прервали ли поток. */
+class Cancellation {
+
+    private static final int CHECK_MASK = 0xFFF;
+
+    static void check(int step) {
+        if((step & CHECK_MASK) == 0 && Thread.currentThread().isInterrupted())
+            throw new CancellationException();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Алгоритм Эллера: лабиринт строится построчно, в памяти держится только текущая строка
+ * (O(cols)), поэтому высота лабиринта может быть любой - строки можно отдавать потоком
+ * через begin / nextRow, не создавая MazeGrid целиком.
+ */
+public class EllerGenerator implements MazeGenerator {
+
+    /** Получает очередную строку: какие стены справа и снизу от ячеек убраны. */
+    public interface RowListener {
+        void onRow(int row, boolean[] openRight, boolean[] openDown);
+    }
+
+    private final FastRandom random = new FastRandom();
+
+    private int cols, row, steps;
+    // множество (связная область) каждой ячейки текущей строки; -1 - ячейка еще ни с чем не связана
+    private int[] sets;
+    // union-find по номерам множеств, номера всегда в диапазоне [0, cols)
+    private int[] parent;
+    private int[] setCells, remap;
+    private boolean[] hasDown;
+    private boolean[] openRight, openDown;
+
+    @Override
+    public String getName() {
+        return "eller";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int rows = grid.getRows();
+        begin(grid.getCols());
+        for(int j = 0; j < rows; j++)
+            nextRow(j == rows - 1, (row, right, down) -> {
+                for(int i = 0; i < cols; i++) {
+                    int cell = grid.index(i, row);
+                    if(right[i]) grid.carve(cell, MazeGrid.DIR_RIGHT);
+                    if(down[i]) grid.carve(cell, MazeGrid.DIR_BOTTOM);
+                }
+            });
+    }
+
+    /** Семь массивов по cols элементов, от высоты не зависит. */
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        return (long) cols * (4 * 4 + 3);
+    }
+
+    //region ******************* STREAMING *********************************************************
+
+    /** Начинает новый лабиринт шириной cols; строки затем запрашиваются через nextRow. */
+    public void begin(int cols) {
+        this.cols = cols;
+        row = 0;
+        if(sets == null || sets.length != cols) {
+            sets = new int[cols];
+            parent = new int[cols];
+            setCells = new int[cols];
+            remap = new int[cols];
+            hasDown = new boolean[cols];
+            openRight = new boolean[cols];
+            openDown = new boolean[cols];
+        }
+        for(int i = 0; i < cols; i++) sets[i] = -1;
+    }
+
+    /**
+     * Строит следующую строку. В последней строке (last) все разные множества объединяются,
+     * и проходов вниз нет, поэтому лабиринт замкнут и связен.
+     */
+    public void nextRow(boolean last, RowListener listener) {
+        assignSets();
+
+        // объединяем соседей справа: случайно, а в последней строке - все разные множества
+        for(int i = 0; i < cols - 1; i++) {
+            Cancellation.check(++steps);
+            int a = find(sets[i]), b = find(sets[i + 1]);
+            openRight[i] = a != b && (last || random.nextInt(2) == 0);
+            if(openRight[i]) parent[b] = a;
+        }
+        openRight[cols - 1] = false;
+
+        // проходы вниз: у каждого множества хотя бы один, иначе оно окажется отрезанным
+        for(int i = 0; i < cols; i++) {
+            sets[i] = find(sets[i]);
+            setCells[sets[i]] = 0;
+            hasDown[sets[i]] = false;
+        }
+        for(int i = 0; i < cols; i++) setCells[sets[i]]++;
+        for(int i = 0; i < cols; i++) {
+            int set = sets[i];
+            boolean lastOfSet = --setCells[set] == 0;
+            openDown[i] = !last && ((lastOfSet && !hasDown[set]) || random.nextInt(2) == 0);
+            if(openDown[i]) hasDown[set] = true;
+        }
+
+        listener.onRow(row++, openRight, openDown);
+
+        // в следующую строку множество переходит только через проходы вниз
+        for(int i = 0; i < cols; i++)
+            if(!openDown[i]) sets[i] = -1;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    //endregion STREAMING
+
+    //region ******************* HELPERS ***********************************************************
+
+    /** Переводит номера множеств в [0, cols) и дает новые номера несвязанным ячейкам. */
+    private void assignSets() {
+        for(int i = 0; i < cols; i++) remap[i] = -1;
+        int next = 0;
+        for(int i = 0; i < cols; i++) {
+            if(sets[i] < 0) continue;
+            if(remap[sets[i]] < 0) remap[sets[i]] = next++;
+            sets[i] = remap[sets[i]];
+        }
+        for(int i = 0; i < cols; i++) if(sets[i] < 0) sets[i] = next++;
+        for(int i = 0; i < cols; i++) parent[i] = i;
+    }
+
+    private int find(int set) {
+        while(parent[set] != set) {
+            parent[set] = parent[parent[set]];
+            set = parent[set];
+        }
+        return set;
+    }
+
+    //endregion HELPERS
+}
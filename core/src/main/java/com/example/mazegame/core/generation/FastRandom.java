@@ -0,0 +1,44 @@
+package com.example.mazegame.core.generation;
+
+/**
+ * Несинхронизированный генератор xorshift64*. В отличие от java.util.Random не использует
+ * AtomicLong, поэтому годится только для одного потока.
+ */
+public class FastRandom {
+
+    private long state;
+
+    public FastRandom() {
+        this(System.nanoTime());
+    }
+
+    public FastRandom(long seed) {
+        setSeed(seed);
+    }
+
+    public void setSeed(long seed) {
+        // прогоняем seed через splitmix64, чтобы близкие seed'ы давали разные последовательности,
+        // и исключаем нулевое состояние, на котором xorshift "залипает"
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        state = z != 0 ? z : 0x9E3779B97F4A7C15L;
+    }
+
+    public long nextLong() {
+        long x = state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /** Число в диапазоне [0, bound); bound должен быть положительным. */
+    public int nextInt(int bound) {
+        // умножение вместо деления по модулю (метод Лемира без отбраковки - смещение
+        // пренебрежимо мало для маленьких bound)
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/** Во что обошлась генерация: время и память (сетка + служебные структуры алгоритма). */
+public class GenerationProfile {
+
+    private final String generator;
+    private final long nanos;
+    private final long gridBytes, extraBytes;
+
+    public GenerationProfile(String generator, long nanos, long gridBytes, long extraBytes) {
+        this.generator = generator;
+        this.nanos = nanos;
+        this.gridBytes = gridBytes;
+        this.extraBytes = extraBytes;
+    }
+
+    public static GenerationProfile measure(MazeGenerator generator, MazeGrid grid) {
+        long start = System.nanoTime();
+        generator.generate(grid);
+        long nanos = System.nanoTime() - start;
+        return new GenerationProfile(generator.getName(), nanos, grid.size(),
+            generator.estimateExtraBytes(grid.getCols(), grid.getRows()));
+    }
+
+    public String getGenerator() {
+        return generator;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getGridBytes() {
+        return gridBytes;
+    }
+
+    public long getExtraBytes() {
+        return extraBytes;
+    }
+
+    @Override
+    public String toString() {
+        return generator + ": " + (nanos / 1000) + " us, grid " + gridBytes + " B, extra " + extraBytes + " B";
+    }
+}
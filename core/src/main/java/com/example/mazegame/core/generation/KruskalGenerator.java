@@ -0,0 +1,71 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Алгоритм Краскала: все внутренние стены в случайном порядке, стена убирается, если ячейки
+ * по обе стороны еще не связаны (union-find). Память - массив стен и массив родителей.
+ */
+public class KruskalGenerator implements MazeGenerator {
+
+    private final FastRandom random = new FastRandom();
+
+    @Override
+    public String getName() {
+        return "kruskal";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int cols = grid.getCols(), rows = grid.getRows();
+        int cells = grid.size();
+
+        // стена кодируется как cell * 2 + 0 (справа от ячейки) или cell * 2 + 1 (снизу)
+        int[] edges = new int[(cols - 1) * rows + cols * (rows - 1)];
+        int count = 0;
+        for(int cell = 0; cell < cells; cell++) {
+            if(grid.hasNeighbour(cell, MazeGrid.DIR_RIGHT)) edges[count++] = cell << 1;
+            if(grid.hasNeighbour(cell, MazeGrid.DIR_BOTTOM)) edges[count++] = (cell << 1) | 1;
+        }
+        for(int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = edges[i];
+            edges[i] = edges[j];
+            edges[j] = tmp;
+        }
+
+        int[] parent = new int[cells];
+        for(int i = 0; i < cells; i++) parent[i] = i;
+
+        int joined = 0;
+        for(int i = 0; i < count && joined < cells - 1; i++) {
+            Cancellation.check(i + 1);
+            int cell = edges[i] >> 1;
+            int dir = (edges[i] & 1) == 0 ? MazeGrid.DIR_RIGHT : MazeGrid.DIR_BOTTOM;
+            int a = find(parent, cell), b = find(parent, grid.neighbour(cell, dir));
+            if(a == b) continue;
+            parent[b] = a;
+            grid.carve(cell, dir);
+            joined++;
+        }
+    }
+
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        long cells = (long) cols * rows;
+        return 4 * (2 * cells) + 4 * cells;
+    }
+
+    static int find(int[] parent, int cell) {
+        while(parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/** Алгоритм генерации: получает сетку со всеми стенами и прорезает в ней проходы. */
+public interface MazeGenerator {
+
+    String getName();
+
+    /** Следующий generate с тем же seed'ом и размерами построит точно такой же лабиринт. */
+    void setSeed(long seed);
+
+    void generate(MazeGrid grid);
+
+    /** Сколько памяти (в байтах) нужно алгоритму сверх самой сетки для лабиринта cols x rows. */
+    long estimateExtraBytes(int cols, int rows);
+}
@@ -0,0 +1,20 @@
+package com.example.mazegame.core.generation;
+
+/** Алгоритмы по имени (MazeGenerator.getName), например чтобы создать по копии на поток. */
+public final class MazeGenerators {
+
+    private MazeGenerators() {}
+
+    /** Неизвестное имя дает алгоритм по умолчанию - рекурсивный возврат. */
+    public static MazeGenerator create(String name) {
+        switch(name) {
+            case "eller": return new EllerGenerator();
+            case "kruskal": return new KruskalGenerator();
+            case "wilson": return new WilsonGenerator();
+            case "binary-tree": return new BinaryTreeGenerator();
+            case "sidewinder": return new SidewinderGenerator();
+            case "tiled": return new TiledGenerator();
+            default: return new BacktrackerGenerator();
+        }
+    }
+}
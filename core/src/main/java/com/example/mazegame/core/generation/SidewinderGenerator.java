@@ -0,0 +1,47 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Sidewinder: в каждой строке идем "серией" вправо и в случайный момент закрываем серию
+ * проходом вверх из случайной ее ячейки. Верхняя строка - сплошной коридор.
+ */
+public class SidewinderGenerator implements MazeGenerator {
+
+    private final FastRandom random = new FastRandom();
+
+    @Override
+    public String getName() {
+        return "sidewinder";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int cols = grid.getCols(), rows = grid.getRows();
+        for(int i = 0; i < cols - 1; i++) grid.carve(grid.index(i, 0), MazeGrid.DIR_RIGHT);
+
+        for(int j = 1; j < rows; j++) {
+            int runStart = 0;
+            for(int i = 0; i < cols; i++) {
+                Cancellation.check(grid.index(i, j));
+                boolean closeRun = i == cols - 1 || random.nextInt(2) == 0;
+                if(closeRun) {
+                    int up = runStart + random.nextInt(i - runStart + 1);
+                    grid.carve(grid.index(up, j), MazeGrid.DIR_TOP);
+                    runStart = i + 1;
+                }
+                else grid.carve(grid.index(i, j), MazeGrid.DIR_RIGHT);
+            }
+        }
+    }
+
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        return 0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Параллельная генерация больших лабиринтов: сетка делится на плитки tileSize x tileSize,
+ * каждая плитка - отдельный идеальный лабиринт (рекурсивный возврат), плитки генерируются
+ * на потоках ForkJoinPool. Затем плитки сшиваются как в алгоритме Краскала: границы между
+ * соседними плитками в случайном порядке, на границе прорезается один проход, если плитки
+ * еще не связаны (union-find по плиткам). Дерево из деревьев - снова идеальный лабиринт,
+ * но между плитками всего по одному проходу, и на больших размерах они заметны.
+ */
+public class TiledGenerator implements MazeGenerator {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    // одна листовая задача - несколько плиток подряд, чтобы не дробить работу слишком мелко
+    private static final int TILES_PER_TASK = 4;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final FastRandom random = new FastRandom();
+    private long seed = random.nextLong();
+
+    // сетка плитки и генератор у каждого потока свои
+    private final ThreadLocal<TileWorker> workers = new ThreadLocal<TileWorker>() {
+        @Override
+        protected TileWorker initialValue() {
+            return new TileWorker();
+        }
+    };
+
+    public TiledGenerator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    public TiledGenerator(ForkJoinPool pool, int tileSize) {
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    @Override
+    public String getName() {
+        return "tiled";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int tileCols = (grid.getCols() + tileSize - 1) / tileSize;
+        int tileRows = (grid.getRows() + tileSize - 1) / tileSize;
+        long seed = this.seed;
+        // следующий generate без setSeed даст другой лабиринт
+        this.seed = random.nextLong() ^ seed;
+
+        carveTiles(grid, tileCols, tileRows, seed);
+        random.setSeed(seed);
+        stitch(grid, tileCols, tileRows);
+    }
+
+    /** Сетка плитки на каждый поток и union-find с границами по плиткам. */
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        long tiles = (long) ((cols + tileSize - 1) / tileSize) * ((rows + tileSize - 1) / tileSize);
+        return (long) tileSize * tileSize * pool.getParallelism() + 4 * tiles + 4 * 2 * tiles;
+    }
+
+    //region ******************* HELPERS ***********************************************************
+
+    /**
+     * Плитки в pool. Потоки pool'а никто не прерывает, а pool.invoke ждет без учета прерывания,
+     * поэтому ждем через get и при прерывании сами просим задачи остановиться между плитками.
+     */
+    private void carveTiles(MazeGrid grid, int tileCols, int tileRows, long seed) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinTask<Void> task = pool.submit(new TileTask(grid, tileCols, seed, cancelled, 0, tileCols * tileRows));
+        try {
+            task.get();
+        }
+        catch(InterruptedException e) {
+            cancelled.set(true);
+            // задачи пишут в grid - отдаем его только после того, как они остановятся
+            task.quietlyJoin();
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Соединяет плитки в одно дерево: по одному проходу на каждую границу остовного дерева. */
+    private void stitch(MazeGrid grid, int tileCols, int tileRows) {
+        int tiles = tileCols * tileRows;
+        // граница кодируется как tile * 2 + 0 (с плиткой справа) или tile * 2 + 1 (с плиткой снизу)
+        int[] borders = new int[(tileCols - 1) * tileRows + tileCols * (tileRows - 1)];
+        int count = 0;
+        for(int tile = 0; tile < tiles; tile++) {
+            if(tile % tileCols < tileCols - 1) borders[count++] = tile << 1;
+            if(tile / tileCols < tileRows - 1) borders[count++] = (tile << 1) | 1;
+        }
+        for(int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = borders[i];
+            borders[i] = borders[j];
+            borders[j] = tmp;
+        }
+
+        int[] parent = new int[tiles];
+        for(int i = 0; i < tiles; i++) parent[i] = i;
+
+        for(int i = 0; i < count; i++) {
+            Cancellation.check(i + 1);
+            int tile = borders[i] >> 1;
+            boolean right = (borders[i] & 1) == 0;
+            int next = right ? tile + 1 : tile + tileCols;
+            int a = KruskalGenerator.find(parent, tile), b = KruskalGenerator.find(parent, next);
+            if(a == b) continue;
+            parent[b] = a;
+
+            // проход в случайном месте общей границы (крайние плитки могут быть неполными)
+            int col = (tile % tileCols) * tileSize, row = (tile / tileCols) * tileSize;
+            if(right) {
+                int height = Math.min(tileSize, grid.getRows() - row);
+                grid.carve(grid.index(col + tileSize - 1, row + random.nextInt(height)), MazeGrid.DIR_RIGHT);
+            }
+            else {
+                int width = Math.min(tileSize, grid.getCols() - col);
+                grid.carve(grid.index(col + random.nextInt(width), row + tileSize - 1), MazeGrid.DIR_BOTTOM);
+            }
+        }
+    }
+
+    //endregion HELPERS
+
+    private static final class TileWorker {
+        private final BacktrackerGenerator generator = new BacktrackerGenerator();
+        private MazeGrid tile;
+
+        /** Генерирует плитку в своей сетке и переносит проходы в общую. */
+        private void carve(MazeGrid grid, int col, int row, int width, int height, long seed) {
+            if(tile == null || tile.getCols() != width || tile.getRows() != height) tile = new MazeGrid(width, height);
+            else tile.reset();
+            generator.setSeed(seed);
+            generator.generate(tile);
+
+            // разные плитки не имеют общих ячеек, поэтому потоки пишут в разные байты сетки;
+            // построчное копирование вместо carve по каждому проходу - одна запись на ячейку без ветвлений
+            grid.copyWalls(tile, col, row);
+        }
+    }
+
+    /** Плитки [from, to); делится пополам, пока не останется TILES_PER_TASK плиток. */
+    private final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MazeGrid grid;
+        private final int tileCols;
+        private final long seed;
+        // выставляется, когда поток, вызвавший generate, прерван
+        private final AtomicBoolean cancelled;
+        private final int from, to;
+
+        private TileTask(MazeGrid grid, int tileCols, long seed, AtomicBoolean cancelled, int from, int to) {
+            this.grid = grid;
+            this.tileCols = tileCols;
+            this.seed = seed;
+            this.cancelled = cancelled;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(cancelled.get()) return;
+            if(to - from > TILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(grid, tileCols, seed, cancelled, from, middle),
+                    new TileTask(grid, tileCols, seed, cancelled, middle, to));
+                return;
+            }
+
+            TileWorker worker = workers.get();
+            for(int tile = from; tile < to; tile++) {
+                if(cancelled.get()) return;
+                int col = (tile % tileCols) * tileSize, row = (tile / tileCols) * tileSize;
+                int width = Math.min(tileSize, grid.getCols() - col);
+                int height = Math.min(tileSize, grid.getRows() - row);
+                // seed плитки зависит только от seed'а лабиринта и номера плитки, но не от потока
+                worker.carve(grid, col, row, width, height, seed + tile * 0x9E3779B97F4A7C15L);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.mazegame.core.generation;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Алгоритм Уилсона: случайные блуждания со стиранием петель. Дает равномерно случайный
+ * лабиринт, но на больших сетках заметно медленнее остальных (особенно в начале).
+ */
+public class WilsonGenerator implements MazeGenerator {
+
+    private final FastRandom random = new FastRandom();
+    private final int[] dirs = new int[4];
+
+    @Override
+    public String getName() {
+        return "wilson";
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void generate(MazeGrid grid) {
+        int cells = grid.size();
+        // направление, в котором блуждание последний раз ушло из ячейки; повторный заход
+        // перезаписывает его, так петли стираются сами собой
+        byte[] walk = new byte[cells];
+        int steps = 0;
+
+        // флаг посещения сетки отмечает ячейки, уже вошедшие в лабиринт
+        grid.visit(random.nextInt(cells));
+        for(int start = 0; start < cells; start++) {
+            if(grid.isVisited(start)) continue;
+
+            int cell = start;
+            while(!grid.isVisited(cell)) {
+                Cancellation.check(++steps);
+                int dir = randomDir(grid, cell);
+                walk[cell] = (byte) dir;
+                cell = grid.neighbour(cell, dir);
+            }
+
+            cell = start;
+            while(!grid.isVisited(cell)) {
+                grid.visit(cell);
+                grid.carve(cell, walk[cell]);
+                cell = grid.neighbour(cell, walk[cell]);
+            }
+        }
+    }
+
+    @Override
+    public long estimateExtraBytes(int cols, int rows) {
+        return (long) cols * rows;
+    }
+
+    private int randomDir(MazeGrid grid, int cell) {
+        int count = 0;
+        for(int dir = MazeGrid.DIR_LEFT; dir <= MazeGrid.DIR_BOTTOM; dir++)
+            if(grid.hasNeighbour(cell, dir)) dirs[count++] = dir;
+        return dirs[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.mazegame.core.geometry;
+
+/** Прямоугольник на float'ах, замена android.graphics.RectF для кода без зависимостей от Android. */
+public class Box {
+
+    public float left, top, right, bottom;
+
+    public Box() { }
+
+    public Box(float left, float top, float right, float bottom) {
+        set(left, top, right, bottom);
+    }
+
+    public Box(Box box) {
+        set(box);
+    }
+
+    public Box set(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        return this;
+    }
+
+    public Box set(Box box) {
+        return set(box.left, box.top, box.right, box.bottom);
+    }
+
+    public void offset(float dx, float dy) {
+        left += dx;
+        top += dy;
+        right += dx;
+        bottom += dy;
+    }
+
+    public void offsetTo(float newLeft, float newTop) {
+        right += newLeft - left;
+        bottom += newTop - top;
+        left = newLeft;
+        top = newTop;
+    }
+
+    public float width() {
+        return right - left;
+    }
+
+    public float height() {
+        return bottom - top;
+    }
+
+    public float centerX() {
+        return (left + right) * 0.5f;
+    }
+
+    public float centerY() {
+        return (top + bottom) * 0.5f;
+    }
+
+    /** Правила те же, что у RectF.contains: левая и верхняя границы включаются, остальные нет. */
+    public boolean contains(float x, float y) {
+        return left < right && top < bottom && x >= left && x < right && y >= top && y < bottom;
+    }
+
+    /** Касание краями пересечением не считается (как и в RectF.intersects). */
+    public static boolean intersects(Box a, Box b) {
+        return a.left < b.right && b.left < a.right && a.top < b.bottom && b.top < a.bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "Box(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.mazegame.core.geometry;
+
+/**
+ * Координаты с фиксированной точкой: int в 1/256 пикселя. Арифметика на них точная
+ * и одинаковая на любой платформе, а до лабиринта в 8 миллионов пикселей хватает
+ * даже разностей координат без переполнения.
+ */
+public final class FixedPoint {
+
+    public static final int SHIFT = 8;
+    public static final int ONE = 1 << SHIFT;
+
+    private FixedPoint() {}
+
+    public static int toFixed(float value) {
+        return Math.round(value * ONE);
+    }
+
+    public static float toFloat(int value) {
+        return value / (float) ONE;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.mazegame.core.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Индекс стен для проверки столкновений на целых числах (FixedPoint). Устроен как WallIndex:
+ * плоские массивы координат и корзины, но момент касания считается точной дробью, без
+ * округлений float, поэтому результат одинаков на любой платформе.
+ * gather копирует стены-кандидаты подряд в отдельные массивы, и грубая проверка в
+ * sweepGathered - один цикл без ветвлений по ним, который JIT может векторизовать.
+ */
+public class FixedWallIndex {
+
+    private final int originX, originY;
+    private final int bucketSize;
+    private final int bucketCols, bucketRows;
+
+    // координаты стен в виде плоских массивов
+    private final int[] lefts, tops, rights, bottoms;
+    // bucketStart[b]..bucketStart[b + 1] - диапазон в bucketWalls для корзины b
+    private final int[] bucketStart;
+    private final int[] bucketWalls;
+
+    // стены, собранные gather, подряд; индекс опрашивается из одного потока
+    private int[] gatheredLefts = new int[64], gatheredTops = new int[64];
+    private int[] gatheredRights = new int[64], gatheredBottoms = new int[64];
+    // знаковый бит = стена пересекает область всего отрезка пути
+    private int[] candidates = new int[64];
+    private final int[] gatherStamps;
+    private int gatherStamp;
+    private long testCount;
+    // момент первого касания последнего sweep: hitNum / hitDen доли пути
+    private long hitNum, hitDen;
+
+    public FixedWallIndex(List<Box> walls, int cellSize) {
+        int count = walls.size();
+        bucketSize = cellSize * FixedPoint.ONE;
+        lefts = new int[count];
+        tops = new int[count];
+        rights = new int[count];
+        bottoms = new int[count];
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        int i = 0;
+        for(Box wall : walls) {
+            lefts[i] = FixedPoint.toFixed(wall.left);
+            tops[i] = FixedPoint.toFixed(wall.top);
+            rights[i] = FixedPoint.toFixed(wall.right);
+            bottoms[i] = FixedPoint.toFixed(wall.bottom);
+            minX = Math.min(minX, lefts[i]);
+            minY = Math.min(minY, tops[i]);
+            maxX = Math.max(maxX, rights[i]);
+            maxY = Math.max(maxY, bottoms[i]);
+            i++;
+        }
+        if(count == 0) minX = minY = maxX = maxY = 0;
+
+        originX = minX;
+        originY = minY;
+        bucketCols = Math.max(1, (int) (((long) maxX - minX + bucketSize - 1) / bucketSize));
+        bucketRows = Math.max(1, (int) (((long) maxY - minY + bucketSize - 1) / bucketSize));
+
+        // первый проход - считаем стены в каждой корзине, второй - раскладываем их индексы
+        bucketStart = new int[bucketCols * bucketRows + 1];
+        for(i = 0; i < count; i++)
+            for(int row = bucketRow(tops[i]); row <= bucketRow(bottoms[i]); row++)
+                for(int col = bucketCol(lefts[i]); col <= bucketCol(rights[i]); col++)
+                    bucketStart[col + row * bucketCols + 1]++;
+        for(int b = 0; b < bucketCols * bucketRows; b++)
+            bucketStart[b + 1] += bucketStart[b];
+
+        gatherStamps = new int[count];
+        bucketWalls = new int[bucketStart[bucketCols * bucketRows]];
+        int[] fill = new int[bucketCols * bucketRows];
+        for(i = 0; i < count; i++)
+            for(int row = bucketRow(tops[i]); row <= bucketRow(bottoms[i]); row++)
+                for(int col = bucketCol(lefts[i]); col <= bucketCol(rights[i]); col++) {
+                    int bucket = col + row * bucketCols;
+                    bucketWalls[bucketStart[bucket] + fill[bucket]++] = i;
+                }
+    }
+
+    //region ******************* QUERIES ***********************************************************
+
+    /**
+     * Непрерывная проверка: rect сдвигается на (dx, dy), ищем первое касание стены на этом пути.
+     * @return true, если путь не свободен; доля пути до касания - getHitNum / getHitDen
+     */
+    public boolean sweep(int left, int top, int right, int bottom, int dx, int dy) {
+        int count = gather(Math.min(left, left + dx), Math.min(top, top + dy),
+            Math.max(right, right + dx), Math.max(bottom, bottom + dy));
+        return sweepGathered(count, left, top, right, bottom, dx, dy);
+    }
+
+    /**
+     * Собирает (без повторов) стены всех корзин, которые перекрывает область, чтобы затем
+     * проверить по ним сразу несколько отрезков пути через sweepGathered.
+     * @return количество собранных стен
+     */
+    public int gather(int left, int top, int right, int bottom) {
+        if(++gatherStamp == 0) {
+            // счетчик переполнился - сбрасываем отметки
+            Arrays.fill(gatherStamps, 0);
+            gatherStamp = 1;
+        }
+
+        int count = 0;
+        int colFrom = bucketCol(left), colTo = bucketCol(right);
+        int rowFrom = bucketRow(top), rowTo = bucketRow(bottom);
+        for(int row = rowFrom; row <= rowTo; row++)
+            for(int col = colFrom; col <= colTo; col++) {
+                int bucket = col + row * bucketCols;
+                for(int k = bucketStart[bucket], end = bucketStart[bucket + 1]; k < end; k++) {
+                    int wall = bucketWalls[k];
+                    if(gatherStamps[wall] == gatherStamp) continue;
+                    gatherStamps[wall] = gatherStamp;
+                    if(count == candidates.length) growGathered();
+                    gatheredLefts[count] = lefts[wall];
+                    gatheredTops[count] = tops[wall];
+                    gatheredRights[count] = rights[wall];
+                    gatheredBottoms[count] = bottoms[wall];
+                    count++;
+                }
+            }
+        return count;
+    }
+
+    /** То же, что sweep, но только по стенам, собранным последним вызовом gather. */
+    public boolean sweepGathered(int count, int left, int top, int right, int bottom, int dx, int dy) {
+        testCount += count;
+        int sweptLeft = Math.min(left, left + dx), sweptRight = Math.max(right, right + dx);
+        int sweptTop = Math.min(top, top + dy), sweptBottom = Math.max(bottom, bottom + dy);
+
+        // грубая проверка: пересекает ли стена область всего отрезка. Все четыре разности
+        // отрицательны только при пересечении, и знаковый бит их AND это и показывает
+        int[] candidates = this.candidates;
+        int[] gatheredLefts = this.gatheredLefts, gatheredTops = this.gatheredTops;
+        int[] gatheredRights = this.gatheredRights, gatheredBottoms = this.gatheredBottoms;
+        for(int k = 0; k < count; k++)
+            candidates[k] = (gatheredLefts[k] - sweptRight) & (sweptLeft - gatheredRights[k])
+                & (gatheredTops[k] - sweptBottom) & (sweptTop - gatheredBottoms[k]);
+
+        hitNum = 1;
+        hitDen = 0;
+        boolean hit = false;
+        for(int k = 0; k < count; k++)
+            if(candidates[k] < 0 && sweepWall(k, left, top, right, bottom, dx, dy)) {
+                hit = true;
+                if(hitNum == 0) break;
+            }
+        return hit;
+    }
+
+    /**
+     * Свободная область вокруг rect: прямоугольник внутри rect, расширенного на margin,
+     * который не пересекает ни одной стены. Каждая мешающая стена отрезается с той стороны,
+     * где теряется меньше площади. Пока rect двигается внутри области, касаний быть не может.
+     * @param out left, top, right, bottom найденной области
+     * @return false, если rect уже пересекает стену
+     */
+    public boolean freeRegion(int left, int top, int right, int bottom, int margin, int[] out) {
+        int regionLeft = left - margin, regionTop = top - margin;
+        int regionRight = right + margin, regionBottom = bottom + margin;
+        int count = gather(regionLeft, regionTop, regionRight, regionBottom);
+        for(int k = 0; k < count; k++) {
+            int wallLeft = gatheredLefts[k], wallTop = gatheredTops[k];
+            int wallRight = gatheredRights[k], wallBottom = gatheredBottoms[k];
+            if(!(wallLeft < regionRight && regionLeft < wallRight && wallTop < regionBottom && regionTop < wallBottom))
+                continue;
+
+            // сколько площади останется после каждого из срезов; срез не может задеть сам rect
+            long width = regionRight - regionLeft, height = regionBottom - regionTop;
+            long best = -1;
+            int side = -1;
+            if(wallRight <= left && (regionRight - wallRight) * height > best) {
+                best = (regionRight - wallRight) * height;
+                side = 0;
+            }
+            if(wallLeft >= right && (wallLeft - regionLeft) * height > best) {
+                best = (wallLeft - regionLeft) * height;
+                side = 1;
+            }
+            if(wallBottom <= top && (regionBottom - wallBottom) * width > best) {
+                best = (regionBottom - wallBottom) * width;
+                side = 2;
+            }
+            if(wallTop >= bottom && (wallTop - regionTop) * width > best) side = 3;
+
+            switch(side) {
+                case 0: regionLeft = wallRight; break;
+                case 1: regionRight = wallLeft; break;
+                case 2: regionTop = wallBottom; break;
+                case 3: regionBottom = wallTop; break;
+                default: return false;
+            }
+        }
+
+        out[0] = regionLeft;
+        out[1] = regionTop;
+        out[2] = regionRight;
+        out[3] = regionBottom;
+        return true;
+    }
+
+    /** Числитель доли пути до касания (>= 0) после sweep, вернувшего true. */
+    public long getHitNum() {
+        return hitNum;
+    }
+
+    /** Знаменатель доли пути до касания (> 0). */
+    public long getHitDen() {
+        return hitDen;
+    }
+
+    public int size() {
+        return lefts.length;
+    }
+
+    /** Сторона корзины (размер ячейки) в FixedPoint. */
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    /** Сколько стен всего проверили sweep и sweepGathered. */
+    public long getTestCount() {
+        return testCount;
+    }
+
+    //endregion QUERIES
+
+    //region ******************* HELPERS ***********************************************************
+
+    /**
+     * Метод "плит" на дробях: вход и выход по каждой оси - num / den с den > 0, а дроби
+     * сравниваются перекрестным умножением в long. Если касание раньше текущего
+     * hitNum / hitDen, оно записывается туда.
+     */
+    private boolean sweepWall(int k, int left, int top, int right, int bottom, int dx, int dy) {
+        long entryNum = -1, entryDen = 0, exitNum = 1, exitDen = 0;
+        if(dx > 0) {
+            entryNum = gatheredLefts[k] - right;
+            exitNum = gatheredRights[k] - left;
+            entryDen = exitDen = dx;
+        }
+        else if(dx < 0) {
+            entryNum = left - gatheredRights[k];
+            exitNum = right - gatheredLefts[k];
+            entryDen = exitDen = -dx;
+        }
+        else if(!(left < gatheredRights[k] && gatheredLefts[k] < right)) return false;
+
+        if(dy != 0) {
+            long yEntry = dy > 0 ? gatheredTops[k] - bottom : top - gatheredBottoms[k];
+            long yExit = dy > 0 ? gatheredBottoms[k] - top : bottom - gatheredTops[k];
+            long yDen = Math.abs(dy);
+            // entryDen == 0 - по x ограничений нет (минус и плюс бесконечность)
+            if(entryDen == 0 || yEntry * entryDen > entryNum * yDen) {
+                entryNum = yEntry;
+                entryDen = yDen;
+            }
+            if(exitDen == 0 || yExit * exitDen < exitNum * yDen) {
+                exitNum = yExit;
+                exitDen = yDen;
+            }
+        }
+        else if(!(top < gatheredBottoms[k] && gatheredTops[k] < bottom)) return false;
+
+        // пути нет, а rect уже пересекает стену - касание сразу
+        if(entryDen == 0) {
+            entryNum = 0;
+            entryDen = 1;
+        }
+        else {
+            // касание краями пересечением не считается (как и в Box.intersects)
+            if(entryNum * exitDen >= exitNum * entryDen || exitNum <= 0 || entryNum >= entryDen) return false;
+            if(entryNum < 0) {
+                entryNum = 0;
+                entryDen = 1;
+            }
+        }
+        if(hitDen != 0 && entryNum * hitDen >= hitNum * entryDen) return false;
+        hitNum = entryNum;
+        hitDen = entryDen;
+        return true;
+    }
+
+    private void growGathered() {
+        int size = candidates.length * 2;
+        gatheredLefts = Arrays.copyOf(gatheredLefts, size);
+        gatheredTops = Arrays.copyOf(gatheredTops, size);
+        gatheredRights = Arrays.copyOf(gatheredRights, size);
+        gatheredBottoms = Arrays.copyOf(gatheredBottoms, size);
+        candidates = new int[size];
+    }
+
+    private int bucketCol(int x) {
+        int col = (int) (((long) x - originX) / bucketSize);
+        return col < 0 ? 0 : col >= bucketCols ? bucketCols - 1 : col;
+    }
+
+    private int bucketRow(int y) {
+        int row = (int) (((long) y - originY) / bucketSize);
+        return row < 0 ? 0 : row >= bucketRows ? bucketRows - 1 : row;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,122 @@
+package com.example.mazegame.core.geometry;
+
+import com.example.mazegame.core.MazeGrid;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Превращает карту стен в rect'ы. Общая стена двух соседних ячеек выдается один раз,
+ * а идущие подряд отрезки одной линии склеиваются в один длинный rect.
+ */
+public class WallGeometry {
+
+    private final List<Box> walls;
+    private final int rawCount;
+
+    private WallGeometry(List<Box> walls, int rawCount) {
+        this.walls = walls;
+        this.rawCount = rawCount;
+    }
+
+    /** Карта стен по линиям сетки: горизонтальные линии 0..rows и вертикальные 0..cols. */
+    public interface Source {
+        int getCols();
+        int getRows();
+        /** Есть ли стена на горизонтальной линии line над ячейкой столбца col. */
+        boolean hasHorizontalWall(int col, int line);
+        /** Есть ли стена на вертикальной линии line слева от ячейки строки row. */
+        boolean hasVerticalWall(int line, int row);
+    }
+
+    public static WallGeometry build(MazeGrid grid, int wallThickness, int cellSize) {
+        return build(new Source() {
+            @Override
+            public int getCols() {
+                return grid.getCols();
+            }
+
+            @Override
+            public int getRows() {
+                return grid.getRows();
+            }
+
+            // для линии берем верхнюю стену первого ряда или нижнюю стену ряда над линией
+            @Override
+            public boolean hasHorizontalWall(int col, int line) {
+                return line == 0
+                    ? grid.hasWall(grid.index(col, 0), MazeGrid.DIR_TOP)
+                    : grid.hasWall(grid.index(col, line - 1), MazeGrid.DIR_BOTTOM);
+            }
+
+            // аналогично, левая стена первого столбца или правая стена столбца слева
+            @Override
+            public boolean hasVerticalWall(int line, int row) {
+                return line == 0
+                    ? grid.hasWall(grid.index(0, row), MazeGrid.DIR_LEFT)
+                    : grid.hasWall(grid.index(line - 1, row), MazeGrid.DIR_RIGHT);
+            }
+        }, wallThickness, cellSize, 0f);
+    }
+
+    /** @param originY смещение по вертикали (например, для полосы бесконечного лабиринта) */
+    public static WallGeometry build(Source source, int wallThickness, int cellSize, float originY) {
+        int cols = source.getCols();
+        int rows = source.getRows();
+        float half = wallThickness / 2f;
+        List<Box> walls = new ArrayList<>();
+        // внутренняя стена принадлежит двум ячейкам, внешняя - одной
+        int rawCount = 0;
+
+        for(int j = 0; j <= rows; j++) {
+            int runStart = -1;
+            for(int i = 0; i <= cols; i++) {
+                boolean wall = i < cols && source.hasHorizontalWall(i, j);
+                if(wall) rawCount += j == 0 || j == rows ? 1 : 2;
+                if(wall && runStart < 0) runStart = i;
+                else if(!wall && runStart >= 0) {
+                    float top = originY + j * cellSize - half;
+                    walls.add(new Box(runStart * cellSize - half, top, i * cellSize + half, top + wallThickness));
+                    runStart = -1;
+                }
+            }
+        }
+
+        for(int i = 0; i <= cols; i++) {
+            int runStart = -1;
+            for(int j = 0; j <= rows; j++) {
+                boolean wall = j < rows && source.hasVerticalWall(i, j);
+                if(wall) rawCount += i == 0 || i == cols ? 1 : 2;
+                if(wall && runStart < 0) runStart = j;
+                else if(!wall && runStart >= 0) {
+                    float left = i * cellSize - half;
+                    walls.add(new Box(left, originY + runStart * cellSize - half,
+                        left + wallThickness, originY + j * cellSize + half));
+                    runStart = -1;
+                }
+            }
+        }
+
+        return new WallGeometry(walls, rawCount);
+    }
+
+    //region ******************* GETTERS ***********************************************************
+
+    public List<Box> getWalls() {
+        return walls;
+    }
+
+    /** Сколько rect'ов получилось бы без слияния (по 4 на ячейку, общие стены дважды). */
+    public int getRawCount() {
+        return rawCount;
+    }
+
+    public int getMergedCount() {
+        return walls.size();
+    }
+
+    public float getReduction() {
+        return rawCount > 0 ? 1f - (float) walls.size() / rawCount : 0f;
+    }
+
+    //endregion GETTERS
+}
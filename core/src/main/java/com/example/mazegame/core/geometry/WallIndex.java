@@ -0,0 +1,237 @@
+package com.example.mazegame.core.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Равномерная сетка "корзин" поверх стен лабиринта. Строится один раз на лабиринт,
+ * запрос проверяет только стены тех корзин, которые перекрывает переданный rect.
+ */
+public class WallIndex {
+
+    public static final float NO_HIT = Float.POSITIVE_INFINITY;
+
+    private final float originX, originY;
+    private final float bucketSize;
+    private final int bucketCols, bucketRows;
+
+    // координаты стен в виде плоских массивов
+    private final float[] lefts, tops, rights, bottoms;
+    // bucketStart[b]..bucketStart[b + 1] - диапазон в bucketWalls для корзины b
+    private final int[] bucketStart;
+    private final int[] bucketWalls;
+
+    // буферы для пакетных запросов (gather + sweepGathered); индекс опрашивается из одного потока
+    private int[] gathered = new int[64];
+    private final int[] gatherStamps;
+    private int gatherStamp;
+    // сколько стен проверено sweep-запросами (для метрик); считается по корзинам, а не по стенам
+    private long testCount;
+
+    public WallIndex(List<Box> walls, float bucketSize) {
+        int count = walls.size();
+        this.bucketSize = bucketSize;
+        lefts = new float[count];
+        tops = new float[count];
+        rights = new float[count];
+        bottoms = new float[count];
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        int i = 0;
+        for(Box wall : walls) {
+            lefts[i] = wall.left;
+            tops[i] = wall.top;
+            rights[i] = wall.right;
+            bottoms[i] = wall.bottom;
+            minX = Math.min(minX, wall.left);
+            minY = Math.min(minY, wall.top);
+            maxX = Math.max(maxX, wall.right);
+            maxY = Math.max(maxY, wall.bottom);
+            i++;
+        }
+        if(count == 0) minX = minY = maxX = maxY = 0;
+
+        originX = minX;
+        originY = minY;
+        bucketCols = Math.max(1, (int) Math.ceil((maxX - minX) / bucketSize));
+        bucketRows = Math.max(1, (int) Math.ceil((maxY - minY) / bucketSize));
+
+        // первый проход - считаем стены в каждой корзине, второй - раскладываем их индексы
+        bucketStart = new int[bucketCols * bucketRows + 1];
+        for(i = 0; i < count; i++)
+            for(int row = bucketRow(tops[i]); row <= bucketRow(bottoms[i]); row++)
+                for(int col = bucketCol(lefts[i]); col <= bucketCol(rights[i]); col++)
+                    bucketStart[col + row * bucketCols + 1]++;
+        for(int b = 0; b < bucketCols * bucketRows; b++)
+            bucketStart[b + 1] += bucketStart[b];
+
+        gatherStamps = new int[count];
+        bucketWalls = new int[bucketStart[bucketCols * bucketRows]];
+        int[] fill = new int[bucketCols * bucketRows];
+        for(i = 0; i < count; i++)
+            for(int row = bucketRow(tops[i]); row <= bucketRow(bottoms[i]); row++)
+                for(int col = bucketCol(lefts[i]); col <= bucketCol(rights[i]); col++) {
+                    int bucket = col + row * bucketCols;
+                    bucketWalls[bucketStart[bucket] + fill[bucket]++] = i;
+                }
+    }
+
+    //region ******************* QUERIES ***********************************************************
+
+    public boolean intersects(Box box) {
+        return intersects(box.left, box.top, box.right, box.bottom);
+    }
+
+    public boolean intersects(float left, float top, float right, float bottom) {
+        int colFrom = bucketCol(left), colTo = bucketCol(right);
+        int rowFrom = bucketRow(top), rowTo = bucketRow(bottom);
+        for(int row = rowFrom; row <= rowTo; row++)
+            for(int col = colFrom; col <= colTo; col++) {
+                int bucket = col + row * bucketCols;
+                for(int k = bucketStart[bucket], end = bucketStart[bucket + 1]; k < end; k++) {
+                    int wall = bucketWalls[k];
+                    // та же проверка, что и в Box.intersects
+                    if(left < rights[wall] && lefts[wall] < right
+                        && top < bottoms[wall] && tops[wall] < bottom) return true;
+                }
+            }
+        return false;
+    }
+
+    /**
+     * Непрерывная проверка: rect сдвигается на (dx, dy), ищем первое касание стены на этом пути.
+     * Проверяются только стены корзин, которые перекрывает вся траектория.
+     * @return доля пути [0, 1) до первого касания или NO_HIT, если путь свободен
+     */
+    public float sweep(float left, float top, float right, float bottom, float dx, float dy) {
+        int colFrom = bucketCol(Math.min(left, left + dx)), colTo = bucketCol(Math.max(right, right + dx));
+        int rowFrom = bucketRow(Math.min(top, top + dy)), rowTo = bucketRow(Math.max(bottom, bottom + dy));
+        float best = NO_HIT;
+        for(int row = rowFrom; row <= rowTo; row++)
+            for(int col = colFrom; col <= colTo; col++) {
+                int bucket = col + row * bucketCols;
+                testCount += bucketStart[bucket + 1] - bucketStart[bucket];
+                for(int k = bucketStart[bucket], end = bucketStart[bucket + 1]; k < end; k++) {
+                    float t = sweepWall(bucketWalls[k], left, top, right, bottom, dx, dy, best);
+                    if(t < best) {
+                        best = t;
+                        if(best == 0f) return 0f;
+                    }
+                }
+            }
+        return best;
+    }
+
+    /**
+     * Собирает (без повторов) стены всех корзин, которые перекрывает область, чтобы затем
+     * проверить по ним сразу несколько отрезков пути через sweepGathered.
+     * @return количество собранных стен
+     */
+    public int gather(float left, float top, float right, float bottom) {
+        if(++gatherStamp == 0) {
+            // счетчик переполнился - сбрасываем отметки
+            Arrays.fill(gatherStamps, 0);
+            gatherStamp = 1;
+        }
+
+        int count = 0;
+        int colFrom = bucketCol(left), colTo = bucketCol(right);
+        int rowFrom = bucketRow(top), rowTo = bucketRow(bottom);
+        for(int row = rowFrom; row <= rowTo; row++)
+            for(int col = colFrom; col <= colTo; col++) {
+                int bucket = col + row * bucketCols;
+                for(int k = bucketStart[bucket], end = bucketStart[bucket + 1]; k < end; k++) {
+                    int wall = bucketWalls[k];
+                    if(gatherStamps[wall] == gatherStamp) continue;
+                    gatherStamps[wall] = gatherStamp;
+                    if(count == gathered.length) gathered = Arrays.copyOf(gathered, count * 2);
+                    gathered[count++] = wall;
+                }
+            }
+        return count;
+    }
+
+    /** То же, что sweep, но только по стенам, собранным последним вызовом gather. */
+    public float sweepGathered(int count, float left, float top, float right, float bottom, float dx, float dy) {
+        testCount += count;
+        float best = NO_HIT;
+        for(int k = 0; k < count; k++) {
+            float t = sweepWall(gathered[k], left, top, right, bottom, dx, dy, best);
+            if(t < best) {
+                best = t;
+                if(best == 0f) return 0f;
+            }
+        }
+        return best;
+    }
+
+    /** Номер k-й стены, собранной последним gather (по порядку списка из конструктора). */
+    public int getGathered(int k) {
+        return gathered[k];
+    }
+
+    public int size() {
+        return lefts.length;
+    }
+
+    /** Сколько стен всего проверили sweep и sweepGathered. */
+    public long getTestCount() {
+        return testCount;
+    }
+
+    //endregion QUERIES
+
+    //region ******************* HELPERS ***********************************************************
+
+    /** Метод "плит": ищем отрезок времени, когда проекции пересекаются по обеим осям. */
+    private float sweepWall(int wall, float left, float top, float right, float bottom,
+                            float dx, float dy, float limit) {
+        float entryX, exitX, entryY, exitY;
+        if(dx > 0) {
+            entryX = (lefts[wall] - right) / dx;
+            exitX = (rights[wall] - left) / dx;
+        }
+        else if(dx < 0) {
+            entryX = (rights[wall] - left) / dx;
+            exitX = (lefts[wall] - right) / dx;
+        }
+        else if(left < rights[wall] && lefts[wall] < right) {
+            entryX = Float.NEGATIVE_INFINITY;
+            exitX = Float.POSITIVE_INFINITY;
+        }
+        else return NO_HIT;
+
+        if(dy > 0) {
+            entryY = (tops[wall] - bottom) / dy;
+            exitY = (bottoms[wall] - top) / dy;
+        }
+        else if(dy < 0) {
+            entryY = (bottoms[wall] - top) / dy;
+            exitY = (tops[wall] - bottom) / dy;
+        }
+        else if(top < bottoms[wall] && tops[wall] < bottom) {
+            entryY = Float.NEGATIVE_INFINITY;
+            exitY = Float.POSITIVE_INFINITY;
+        }
+        else return NO_HIT;
+
+        float entry = Math.max(entryX, entryY);
+        float exit = Math.min(exitX, exitY);
+        // касание краями пересечением не считается (как и в Box.intersects)
+        if(entry >= exit || exit <= 0f || entry >= 1f || entry >= limit) return NO_HIT;
+        return Math.max(entry, 0f);
+    }
+
+    private int bucketCol(float x) {
+        int col = (int) ((x - originX) / bucketSize);
+        return col < 0 ? 0 : col >= bucketCols ? bucketCols - 1 : col;
+    }
+
+    private int bucketRow(float y) {
+        int row = (int) ((y - originY) / bucketSize);
+        return row < 0 ? 0 : row >= bucketRows ? bucketRows - 1 : row;
+    }
+
+    //endregion HELPERS
+}
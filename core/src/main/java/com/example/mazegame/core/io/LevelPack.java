@@ -0,0 +1,122 @@
+package com.example.mazegame.core.io;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Набор готовых уровней в одном файле: заголовок, таблица смещений (по int на уровень
+ * и одно завершающее) и сами уровни в MazeFormat. Файл отображается в память целиком,
+ * уровень находится по таблице за O(1) и декодируется только когда он нужен, прямо
+ * из отображения, без копирования набора в heap.
+ */
+public class LevelPack {
+
+    private static final int MAGIC = 0x4D5A504B; // "MZPK"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private LevelPack(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if(buffer.capacity() < HEADER_BYTES) throw new IllegalArgumentException("truncated level pack");
+        if(buffer.getInt(0) != MAGIC) throw new IllegalArgumentException("not a level pack");
+        short version = buffer.getShort(4);
+        if(version != VERSION) throw new IllegalArgumentException("unsupported level pack version " + version);
+        count = buffer.getInt(8);
+        if(count < 0 || tableEnd(count) > buffer.capacity())
+            throw new IllegalArgumentException("bad level count " + count);
+    }
+
+    /** Отображение остается валидным и после закрытия канала, освобождает его сборщик мусора. */
+    public static LevelPack open(File file) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    //region ******************* GETTERS ***********************************************************
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Уровень index как отдельный буфер поверх отображения (позиция на заголовке MazeFormat).
+     * Буфер свой у каждого вызова, поэтому уровни можно читать из разных потоков.
+     * Испорченная таблица смещений - IllegalArgumentException.
+     */
+    public ByteBuffer getLevel(int index) {
+        if(index < 0 || index >= count) throw new IndexOutOfBoundsException("level " + index + " of " + count);
+        int start = buffer.getInt(HEADER_BYTES + 4 * index);
+        int end = buffer.getInt(HEADER_BYTES + 4 * (index + 1));
+        if(start < tableEnd(count) || end < start || end > buffer.capacity())
+            throw new IllegalArgumentException("bad offsets of level " + index + ": " + start + ".." + end);
+        ByteBuffer level = buffer.duplicate();
+        level.limit(end).position(start);
+        return level.slice();
+    }
+
+    public MazeFormat.Header getHeader(int index) {
+        return MazeFormat.readHeader(getLevel(index));
+    }
+
+    //endregion GETTERS
+
+    //region ******************* WRITE *************************************************************
+
+    /**
+     * Генерирует набор из seeds.length уровней cols x rows: уровень i строится из seeds[i].
+     * Файл пишется во временный рядом и переименовывается, поэтому недописанный набор не откроется.
+     */
+    public static void write(File file, MazeGenerator generator, int cols, int rows, long[] seeds) throws IOException {
+        int count = seeds.length;
+        int levelBytes = MazeFormat.encodedSize(cols, rows);
+        long total = tableEnd(count) + (long) levelBytes * count;
+        if(total > Integer.MAX_VALUE) throw new IllegalArgumentException("level pack is too large: " + total);
+
+        File temp = new File(file.getPath() + ".tmp");
+        MazeGrid grid = new MazeGrid(cols, rows);
+        ByteBuffer level = ByteBuffer.allocateDirect(levelBytes);
+        try(RandomAccessFile raf = new RandomAccessFile(temp, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer table = ByteBuffer.allocateDirect((int) tableEnd(count));
+            table.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(count);
+            for(int i = 0; i <= count; i++) table.putInt((int) (tableEnd(count) + (long) levelBytes * i));
+            table.flip();
+            writeFully(channel, table);
+
+            for(long seed : seeds) {
+                grid.reset();
+                generator.setSeed(seed);
+                generator.generate(grid);
+                level.clear();
+                MazeFormat.write(level, grid, seed);
+                level.flip();
+                writeFully(channel, level);
+            }
+        }
+        if(!temp.renameTo(file)) throw new IOException("cannot rename " + temp + " to " + file);
+    }
+
+    //endregion WRITE
+
+    //region ******************* HELPERS ***********************************************************
+
+    private static long tableEnd(int count) {
+        return HEADER_BYTES + 4L * ((long) count + 1);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,154 @@
+package com.example.mazegame.core.io;
+
+import com.example.mazegame.core.MazeGrid;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Компактный двоичный формат лабиринта: заголовок HEADER_BYTES байт (магия, версия, размеры,
+ * seed), затем по 2 бита на ячейку построчно - стена справа (бит 0) и стена снизу (бит 1),
+ * 4 ячейки в байте. Левая и верхняя стены ячейки - это правая и нижняя стены соседей,
+ * а внешний контур всегда замкнут, поэтому их хранить не нужно.
+ */
+public final class MazeFormat {
+
+    public static final int HEADER_BYTES = 24;
+    /** Больше ячеек не читаем: сетка, решатель и стены такого лабиринта не поместятся в память. */
+    public static final int MAX_CELLS = 1 << 26;
+
+    private static final int MAGIC = 0x4D415A45; // "MAZE"
+    private static final short VERSION = 1;
+    private static final int WALL_RIGHT = 1;
+    private static final int WALL_BOTTOM = 1 << 1;
+
+    private MazeFormat() {}
+
+    /** Размеры и seed сохраненного лабиринта. */
+    public static final class Header {
+        private final int cols, rows;
+        private final long seed;
+
+        private Header(int cols, int rows, long seed) {
+            this.cols = cols;
+            this.rows = rows;
+            this.seed = seed;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+    }
+
+    //region ******************* ENCODE ************************************************************
+
+    public static int encodedSize(int cols, int rows) {
+        return HEADER_BYTES + (int) (((long) cols * rows + 3) / 4);
+    }
+
+    /** Пишет лабиринт с текущей позиции out; места должно хватать на encodedSize байт. */
+    public static void write(ByteBuffer out, MazeGrid grid, long seed) {
+        int cols = grid.getCols(), rows = grid.getRows();
+        out.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+            .putInt(cols).putInt(rows).putLong(seed);
+
+        int size = grid.size();
+        int packed = 0;
+        for(int cell = 0; cell < size; cell++) {
+            int walls = (grid.hasWall(cell, MazeGrid.DIR_RIGHT) ? WALL_RIGHT : 0)
+                | (grid.hasWall(cell, MazeGrid.DIR_BOTTOM) ? WALL_BOTTOM : 0);
+            packed |= walls << ((cell & 3) * 2);
+            if((cell & 3) == 3) {
+                out.put((byte) packed);
+                packed = 0;
+            }
+        }
+        if((size & 3) != 0) out.put((byte) packed);
+    }
+
+    public static void save(File file, MazeGrid grid, long seed) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encodedSize(grid.getCols(), grid.getRows()));
+        write(buffer, grid, seed);
+        buffer.flip();
+        try(FileChannel channel = new FileOutputStream(file).getChannel()) {
+            while(buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    //endregion ENCODE
+
+    //region ******************* DECODE ************************************************************
+
+    /**
+     * Читает заголовок с текущей позиции in и сдвигает ее на начало ячеек.
+     * Обрезанные данные и слишком большие размеры - IllegalArgumentException, как и прочая порча.
+     */
+    public static Header readHeader(ByteBuffer in) {
+        if(in.remaining() < HEADER_BYTES) throw new IllegalArgumentException("truncated maze header");
+        if(in.getInt() != MAGIC) throw new IllegalArgumentException("not a maze");
+        short version = in.getShort();
+        if(version != VERSION) throw new IllegalArgumentException("unsupported maze version " + version);
+        in.getShort();
+        int cols = in.getInt(), rows = in.getInt();
+        long seed = in.getLong();
+        if(cols <= 0 || rows <= 0 || (long) cols * rows > MAX_CELLS)
+            throw new IllegalArgumentException("bad maze size " + cols + "x" + rows);
+        if(in.remaining() < encodedSize(cols, rows) - HEADER_BYTES)
+            throw new IllegalArgumentException("truncated maze " + cols + "x" + rows + ": " + in.remaining() + " bytes of cells");
+        return new Header(cols, rows, seed);
+    }
+
+    /**
+     * Читает ячейки после заголовка в grid того же размера: все стены ставятся на место,
+     * затем прорезаются проходы, отмеченные в данных.
+     */
+    public static void readCells(ByteBuffer in, MazeGrid grid) {
+        int cols = grid.getCols(), rows = grid.getRows();
+        grid.reset();
+
+        int size = grid.size();
+        if(in.remaining() < (size + 3) / 4) throw new IllegalArgumentException("truncated maze cells");
+        int packed = 0;
+        for(int cell = 0, col = 0, row = 0; cell < size; cell++) {
+            if((cell & 3) == 0) packed = in.get();
+            int walls = packed >> ((cell & 3) * 2);
+            if((walls & WALL_RIGHT) == 0) {
+                if(col == cols - 1) throw new IllegalArgumentException("open outer wall at " + cell);
+                grid.carve(cell, MazeGrid.DIR_RIGHT);
+            }
+            if((walls & WALL_BOTTOM) == 0) {
+                if(row == rows - 1) throw new IllegalArgumentException("open outer wall at " + cell);
+                grid.carve(cell, MazeGrid.DIR_BOTTOM);
+            }
+            if(++col == cols) {
+                col = 0;
+                row++;
+            }
+        }
+    }
+
+    /** Загружает файл целиком в direct-буфер, готовый для readHeader. */
+    public static ByteBuffer load(File file) throws IOException {
+        try(FileChannel channel = new FileInputStream(file).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while(buffer.hasRemaining())
+                if(channel.read(buffer) < 0) throw new EOFException(file.getPath());
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    //endregion DECODE
+}
@@ -0,0 +1,88 @@
+package com.example.mazegame.core.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Гистограмма значений по степеням двойки: 64 корзины, запись - несколько операций без
+ * выделения памяти. Перцентили приблизительные (верхняя граница корзины), зато количество,
+ * сумма и максимум точные. Пишется в нее только при включенных Metrics.
+ */
+public class Histogram {
+
+    private final String name, unit;
+    private final long[] buckets = new long[64];
+    private long count, sum, max;
+
+    Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /** Время с start (результат Metrics.start); при выключенных Metrics start == 0 и ничего не пишется. */
+    public void stop(long start) {
+        if(start != 0) record(System.nanoTime() - start);
+    }
+
+    public void record(long value) {
+        if(!Metrics.isEnabled()) return;
+        synchronized(this) {
+            buckets[value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value) - 1]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /** Верхняя граница корзины, в которую попадает перцентиль p (0..1). */
+    public synchronized long getPercentile(double p) {
+        long rank = (long) Math.ceil(count * p);
+        long seen = 0;
+        for(int b = 0; b < buckets.length; b++) {
+            seen += buckets[b];
+            if(seen >= rank && seen > 0) return Math.min(max, b == 63 ? Long.MAX_VALUE : (2L << b) - 1);
+        }
+        return max;
+    }
+
+    /** Одна строка отчета: количество, среднее, p50 / p90 / p99 и максимум. */
+    public synchronized String summary() {
+        return String.format(Locale.US, "%-14s n=%-7d mean=%.1f p50=%d p90=%d p99=%d max=%d %s",
+            name, count, getMean(), getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), max, unit);
+    }
+
+    //endregion GETTERS
+}
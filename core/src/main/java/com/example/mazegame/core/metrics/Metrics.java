@@ -0,0 +1,95 @@
+package com.example.mazegame.core.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Метрики горячих участков: время onDraw, onTouch, onMove и создания лабиринта, число
+ * проверок стен на ход и выделения памяти за кадр. Включаются и выключаются на ходу;
+ * выключенные стоят одно чтение volatile-флага на замер, System.nanoTime не вызывается.
+ */
+public final class Metrics {
+
+    /** Сколько байт выделено процессом с его запуска; -1, если платформа этого не знает. */
+    public interface AllocationSource {
+        long allocatedBytes();
+    }
+
+    private static final String NANOS = "ns";
+
+    public static final Histogram DRAW = new Histogram("onDraw", NANOS);
+    public static final Histogram TOUCH = new Histogram("onTouch", NANOS);
+    public static final Histogram MOVE = new Histogram("onMove", NANOS);
+    public static final Histogram CREATE_MAZE = new Histogram("createMaze", NANOS);
+    public static final Histogram WALL_TESTS = new Histogram("wallTests/move", "walls");
+    public static final Histogram FRAME_ALLOCATIONS = new Histogram("alloc/frame", "B");
+    // 1 - ход прошел внутри свободной области без проверки стен, 0 - нет; mean - доля быстрых ходов
+    public static final Histogram FAST_PATH = new Histogram("fastPath/move", "share");
+
+    private static final Histogram[] ALL = { DRAW, TOUCH, MOVE, CREATE_MAZE, WALL_TESTS, FAST_PATH, FRAME_ALLOCATIONS };
+
+    private static volatile boolean enabled;
+    private static volatile AllocationSource allocationSource;
+    // frame() вызывается и из потока отрисовки MazeSurfaceView, а сбрасывается в главном потоке
+    private static volatile long lastFrameAllocated = -1;
+
+    private Metrics() {}
+
+    //region ******************* ACTIONS ***********************************************************
+
+    public static void setEnabled(boolean enabled) {
+        // сначала сброс: увидевший enabled поток увидит и его, а не отсчет до выключения
+        lastFrameAllocated = -1;
+        Metrics.enabled = enabled;
+    }
+
+    public static void setAllocationSource(AllocationSource source) {
+        allocationSource = source;
+    }
+
+    /** Начало замера для Histogram.stop; 0, если метрики выключены. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Отмечает конец кадра: в FRAME_ALLOCATIONS попадает выделенное с прошлого кадра. */
+    public static void frame() {
+        AllocationSource source = allocationSource;
+        if(!enabled || source == null) return;
+        long allocated = source.allocatedBytes();
+        if(allocated < 0) return;
+        if(lastFrameAllocated >= 0) FRAME_ALLOCATIONS.record(allocated - lastFrameAllocated);
+        lastFrameAllocated = allocated;
+    }
+
+    public static void reset() {
+        for(Histogram histogram : ALL) histogram.reset();
+        lastFrameAllocated = -1;
+    }
+
+    public static void writeReport(Writer writer) throws IOException {
+        for(Histogram histogram : ALL) writer.write(histogram.summary() + "\n");
+    }
+
+    public static void export(File file) throws IOException {
+        try(Writer writer = new FileWriter(file)) {
+            writeReport(writer);
+        }
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Histogram[] getHistograms() {
+        return ALL.clone();
+    }
+
+    //endregion GETTERS
+}
@@ -0,0 +1,293 @@
+package com.example.mazegame.core.race;
+
+import com.example.mazegame.core.geometry.FixedPoint;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Клиент гонки. После connect канал неблокирующий: move / restart только дописывают кадры
+ * в буфер, flush отправляет сколько примет сокет, poll разбирает пришедшее. Когда вызывать
+ * flush и poll (по таймеру или через Selector с getChannel), решает вызывающий.
+ * Положения всех игроков (по проверке сервера) хранятся здесь же по их id.
+ */
+public class RaceClient {
+
+    public interface Listener {
+        /** Пришли параметры лабиринта и положения всех игроков на момент входа. */
+        void onWelcome(RaceClient client);
+        /** Пришли изменения положений игроков с прошлого тика. */
+        void onTick(RaceClient client);
+    }
+
+    private static final int INPUT_BUFFER = 1 << 16;
+    private static final int OUTPUT_BUFFER = 4096;
+    // если сервер не забирает ходы, клиент лучше отключится, чем будет копить их без конца
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    private final Listener listener;
+    private SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocate(INPUT_BUFFER);
+    private ByteBuffer out = ByteBuffer.allocate(OUTPUT_BUFFER);
+    // последняя отправленная точка пути: от нее считаются сдвиги следующего MOVE
+    private int sentX, sentY;
+    // начало текущего незакрытого кадра MOVE и число точек в нем
+    private int moveStart = -1, moveCount;
+
+    private int playerId = -1;
+    private int cols, rows, cellSize, wallThickness;
+    private long seed;
+    private float playerSize;
+    private String generatorName;
+    private int presentCount;
+    private final boolean[] present = new boolean[RaceProtocol.MAX_PLAYERS];
+    private final int[] playerX = new int[RaceProtocol.MAX_PLAYERS];
+    private final int[] playerY = new int[RaceProtocol.MAX_PLAYERS];
+    private final int[] playerFlags = new int[RaceProtocol.MAX_PLAYERS];
+
+    public RaceClient(Listener listener) {
+        this.listener = listener;
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /** Соединяется (блокируя поток) и ставит в очередь HELLO. */
+    public synchronized void connect(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        int start = RaceProtocol.begin(reserve(RaceProtocol.LENGTH_BYTES + 2), RaceProtocol.HELLO);
+        out.put((byte) RaceProtocol.VERSION);
+        RaceProtocol.end(out, start);
+    }
+
+    /**
+     * Добавляет к пути центры player'а (centers[2 * i], centers[2 * i + 1]) в пикселях.
+     * Слишком длинные для i16 сдвиги делятся на равные шаги вдоль того же отрезка,
+     * чтобы сервер проверил тот же путь.
+     */
+    public synchronized void move(float[] centers, int count) throws IOException {
+        if(playerId < 0) return;
+        for(int i = 0; i < count; i++) {
+            int x = FixedPoint.toFixed(centers[2 * i]), y = FixedPoint.toFixed(centers[2 * i + 1]);
+            int dx = x - sentX, dy = y - sentY;
+            int steps = Math.max(Math.abs(dx), Math.abs(dy)) / Short.MAX_VALUE + 1;
+            int baseX = sentX, baseY = sentY;
+            for(int step = 1; step <= steps; step++)
+                addSample((int) (baseX + (long) dx * step / steps), (int) (baseY + (long) dy * step / steps));
+        }
+        moveStart = -1;
+    }
+
+    /** Просит сервер вернуть player'а на старт; путь дальше считается от стартовой ячейки. */
+    public synchronized void restart() throws IOException {
+        if(playerId < 0) return;
+        moveStart = -1;
+        RaceProtocol.end(out, RaceProtocol.begin(reserve(RaceProtocol.LENGTH_BYTES + 1), RaceProtocol.RESTART));
+        sentX = sentY = FixedPoint.toFixed(cellSize / 2f);
+    }
+
+    /** @return true, если все накопленное отправлено */
+    public synchronized boolean flush() throws IOException {
+        moveStart = -1;
+        out.flip();
+        channel.write(out);
+        out.compact();
+        return out.position() == 0;
+    }
+
+    /**
+     * Читает все, что пришло, и сообщает listener'у о каждом разобранном кадре.
+     * @return false, если сервер закрыл соединение
+     */
+    public boolean poll() throws IOException {
+        int read;
+        while((read = channel.read(in)) > 0) {
+            in.flip();
+            int length;
+            while((length = RaceProtocol.frameLength(in)) >= 0) {
+                int next = in.position() + RaceProtocol.LENGTH_BYTES + length;
+                in.position(in.position() + RaceProtocol.LENGTH_BYTES);
+                handleFrame(in.get() & 0xFF, in, next);
+                in.position(next);
+            }
+            in.compact();
+            if(!in.hasRemaining()) throw new IOException("frame too long");
+        }
+        return read >= 0;
+    }
+
+    public void close() {
+        try {
+            if(channel != null) channel.close();
+        }
+        catch(IOException ignored) { }
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /** @return -1 до WELCOME */
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getWallThickness() {
+        return wallThickness;
+    }
+
+    public float getPlayerSize() {
+        return playerSize;
+    }
+
+    /** Алгоритм, которым сервер построил лабиринт (MazeGenerator.getName). */
+    public String getGeneratorName() {
+        return generatorName;
+    }
+
+    public boolean hasPlayer(int id) {
+        return present[id];
+    }
+
+    /** Сколько игроков в гонке, включая себя. */
+    public int getPlayerCount() {
+        return presentCount;
+    }
+
+    /** Центр player'а id в пикселях. */
+    public float getPlayerX(int id) {
+        return FixedPoint.toFloat(playerX[id]);
+    }
+
+    public float getPlayerY(int id) {
+        return FixedPoint.toFloat(playerY[id]);
+    }
+
+    /** Флаги RaceProtocol.FLAG_CRASHED / FLAG_FINISHED из последнего тика. */
+    public int getPlayerFlags(int id) {
+        return playerFlags[id];
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    private void addSample(int x, int y) throws IOException {
+        if(moveStart < 0 || moveCount == RaceProtocol.MAX_SAMPLES) {
+            reserve(RaceProtocol.LENGTH_BYTES + 2 + RaceProtocol.MAX_SAMPLES * RaceProtocol.MOVE_SAMPLE_BYTES);
+            moveStart = RaceProtocol.begin(out, RaceProtocol.MOVE);
+            out.put((byte) 0);
+            moveCount = 0;
+        }
+        out.putShort((short) (x - sentX));
+        out.putShort((short) (y - sentY));
+        moveCount++;
+        out.put(moveStart + RaceProtocol.LENGTH_BYTES + 1, (byte) moveCount);
+        RaceProtocol.end(out, moveStart);
+        sentX = x;
+        sentY = y;
+    }
+
+    private ByteBuffer reserve(int bytes) throws IOException {
+        ByteBuffer grown = RaceProtocol.ensure(out, bytes, MAX_PENDING_OUTPUT);
+        if(grown == null) throw new IOException("server does not read moves");
+        out = grown;
+        return out;
+    }
+
+    /** @param end позиция конца кадра в in */
+    private void handleFrame(int type, ByteBuffer in, int end) throws IOException {
+        switch(type) {
+            case RaceProtocol.WELCOME:
+                RaceProtocol.require(in, end, RaceProtocol.WELCOME_BYTES + 1);
+                synchronized(this) {
+                    playerId = in.getShort() & 0xFFFF;
+                    cols = in.getInt();
+                    rows = in.getInt();
+                    seed = in.getLong();
+                    cellSize = in.getInt();
+                    wallThickness = in.getInt();
+                    playerSize = FixedPoint.toFloat(in.getInt());
+                    byte[] name = new byte[in.get() & 0xFF];
+                    RaceProtocol.require(in, end, name.length);
+                    in.get(name);
+                    generatorName = new String(name, StandardCharsets.US_ASCII);
+                    sentX = sentY = FixedPoint.toFixed(cellSize / 2f);
+                }
+                break;
+            case RaceProtocol.SNAPSHOT:
+                RaceProtocol.require(in, end, 2);
+                int count = in.getShort() & 0xFFFF;
+                RaceProtocol.require(in, end, count * RaceProtocol.ABSOLUTE_ENTRY_BYTES);
+                for(; count > 0; count--) {
+                    int id = RaceProtocol.readId(in);
+                    setPresent(id, true);
+                    playerFlags[id] = in.get() & 0xFF;
+                    playerX[id] = in.getInt();
+                    playerY[id] = in.getInt();
+                }
+                listener.onWelcome(this);
+                break;
+            case RaceProtocol.TICK:
+                RaceProtocol.require(in, end, 2);
+                // записи разной длины: сначала проверяем минимальную, абсолютную - в readEntry
+                int entries = in.getShort() & 0xFFFF;
+                RaceProtocol.require(in, end, entries * RaceProtocol.DELTA_ENTRY_BYTES);
+                for(; entries > 0; entries--)
+                    readEntry(in, end);
+                listener.onTick(this);
+                break;
+            default:
+                throw new IOException("unknown frame " + type);
+        }
+    }
+
+    private void readEntry(ByteBuffer in, int end) throws IOException {
+        RaceProtocol.require(in, end, RaceProtocol.DELTA_ENTRY_BYTES);
+        int id = RaceProtocol.readId(in);
+        int flags = in.get() & 0xFF;
+        if((flags & RaceProtocol.FLAG_ABSOLUTE) != 0) {
+            // x i32, y i32 вместо проверенных выше dx i16, dy i16
+            RaceProtocol.require(in, end, 2 * Integer.BYTES);
+            playerX[id] = in.getInt();
+            playerY[id] = in.getInt();
+        }
+        else {
+            playerX[id] += in.getShort();
+            playerY[id] += in.getShort();
+        }
+        setPresent(id, (flags & RaceProtocol.FLAG_LEFT) == 0);
+        playerFlags[id] = flags & ~RaceProtocol.FLAG_ABSOLUTE;
+    }
+
+    private void setPresent(int id, boolean present) {
+        if(this.present[id] != present) presentCount += present ? 1 : -1;
+        this.present[id] = present;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,115 @@
+package com.example.mazegame.core.race;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Двоичный протокол гонки поверх TCP. Кадр: длина (u16, без самого поля длины), тип (u8)
+ * и данные. Координаты - центры player'ов в FixedPoint в координатах лабиринта сервера.
+ * Число записей в кадре и id player'ов проверяются по длине кадра и MAX_PLAYERS: кадр, который
+ * им не соответствует, - нарушение протокола (IOException), а не повод читать чужие байты.
+ *
+ * Клиент -> сервер:
+ *  HELLO   version u8
+ *  MOVE    count u8, count раз (dx i16, dy i16) - сдвиги центра от предыдущей точки
+ *  RESTART - вернуться на старт (после касания стены или финиша)
+ *
+ * Сервер -> клиент:
+ *  WELCOME  playerId u16, cols i32, rows i32, seed i64, cellSize i32, wallThickness i32, playerSize i32,
+ *           длина имени генератора u8, имя (ASCII) - MazeGenerator.getName, по которому строится лабиринт
+ *  SNAPSHOT count u16, count раз (id u16, flags u8, x i32, y i32) - все игроки на момент входа
+ *  TICK     count u16, count раз (id u16, flags u8, затем x i32, y i32 при FLAG_ABSOLUTE
+ *           или dx i16, dy i16 от положения в прошлом TICK) - только изменившиеся игроки
+ */
+public final class RaceProtocol {
+
+    public static final int VERSION = 2;
+
+    public static final int HELLO = 1;
+    public static final int MOVE = 2;
+    public static final int RESTART = 3;
+
+    public static final int WELCOME = 10;
+    public static final int SNAPSHOT = 11;
+    public static final int TICK = 12;
+
+    /** Координаты записи в TICK абсолютные, а не сдвиг. */
+    public static final int FLAG_ABSOLUTE = 1;
+    /** Player коснулся стены; его ходы не принимаются до RESTART. */
+    public static final int FLAG_CRASHED = 1 << 1;
+    public static final int FLAG_FINISHED = 1 << 2;
+    /** Player отключился, его id может достаться новому. */
+    public static final int FLAG_LEFT = 1 << 3;
+
+    public static final int MAX_FRAME = 0xFFFF;
+    public static final int MAX_SAMPLES = 0xFF;
+    public static final int MAX_PLAYERS = 4096;
+
+    static final int LENGTH_BYTES = 2;
+    static final int WELCOME_BYTES = 2 + 4 + 4 + 8 + 4 + 4 + 4;
+    static final int MAX_NAME_BYTES = 0xFF;
+    static final int MOVE_SAMPLE_BYTES = 4;
+    static final int ABSOLUTE_ENTRY_BYTES = 2 + 1 + 8;
+    static final int DELTA_ENTRY_BYTES = 2 + 1 + 4;
+
+    private RaceProtocol() {}
+
+    //region ******************* FRAMES ************************************************************
+
+    /** Начинает кадр type в out. @return позиция начала кадра для end */
+    static int begin(ByteBuffer out, int type) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put((byte) type);
+        return start;
+    }
+
+    static void end(ByteBuffer out, int start) {
+        out.putShort(start, (short) (out.position() - start - LENGTH_BYTES));
+    }
+
+    /**
+     * Длина следующего кадра в in (начиная с position, без поля длины).
+     * @return -1, если кадр пришел не целиком
+     */
+    static int frameLength(ByteBuffer in) {
+        if(in.remaining() < LENGTH_BYTES) return -1;
+        int length = in.getShort(in.position()) & 0xFFFF;
+        return in.remaining() - LENGTH_BYTES >= length ? length : -1;
+    }
+
+    /** Проверяет, что в кадре осталось bytes байт до его конца end. */
+    static void require(ByteBuffer in, int end, int bytes) throws IOException {
+        if(end - in.position() < bytes) throw new IOException("truncated frame");
+    }
+
+    static int readId(ByteBuffer in) throws IOException {
+        int id = in.getShort() & 0xFFFF;
+        if(id >= MAX_PLAYERS) throw new IOException("player id " + id + " out of range");
+        return id;
+    }
+
+    static boolean fitsDelta(int delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Буфер, в котором есть еще bytes свободных байт: тот же или больший (вдвое, но не больше limit)
+     * с тем же содержимым.
+     * @return null, если не хватит и буфера размером limit
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int bytes, int limit) {
+        if(buffer.remaining() >= bytes) return buffer;
+        int capacity = buffer.capacity();
+        while(capacity - buffer.position() < bytes) {
+            if(capacity >= limit) return null;
+            capacity = (int) Math.min(capacity * 2L, limit);
+        }
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    //endregion FRAMES
+}
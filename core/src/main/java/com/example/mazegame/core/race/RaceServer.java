@@ -0,0 +1,478 @@
+package com.example.mazegame.core.race;
+
+import com.example.mazegame.core.Maze;
+import com.example.mazegame.core.MazeBuilder;
+import com.example.mazegame.core.MazeEngine;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import com.example.mazegame.core.geometry.Box;
+import com.example.mazegame.core.geometry.FixedPoint;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Авторитетный сервер гонки: все игроки проходят один лабиринт (cols x rows по seed'у
+ * и генератору, имя которого уходит клиентам в WELCOME), и каждый присланный путь проверяется своим MazeEngine по индексу стен, как на клиенте.
+ * Один поток, неблокирующий ввод-вывод через Selector. Ходы применяются сразу по приходу,
+ * а положения рассылаются пачкой раз в TICK_MILLIS: кадр TICK собирается один раз
+ * и одними и теми же байтами уходит всем клиентам.
+ */
+public class RaceServer implements Runnable {
+
+    public static final int TICK_MILLIS = 50;
+
+    private static final Logger LOG = Logger.getLogger(RaceServer.class.getName());
+
+    // с запасом на самый большой кадр клиента (MOVE из MAX_SAMPLES точек)
+    private static final int INPUT_BUFFER = 4096;
+    private static final int OUTPUT_BUFFER = 4096;
+    // клиент, который не успевает читать столько данных, отключается
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    private final long tickNanos;
+    private final Maze maze;
+    private final byte[] generatorName;
+    private final float playerSize;
+    private final Box finish;
+    private final int startX, startY;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Player[] players = new Player[RaceProtocol.MAX_PLAYERS];
+    private final float[] centers = new float[2 * RaceProtocol.MAX_SAMPLES];
+    private ByteBuffer tickFrame = ByteBuffer.allocate(OUTPUT_BUFFER);
+    private volatile boolean running = true;
+    private volatile boolean tickRequested;
+    // пишутся только потоком сервера, volatile - чтобы их можно было читать снаружи
+    private volatile int playerCount;
+    private volatile long acceptedMoves, acceptedSamples;
+
+    /**
+     * @param playerSize сторона квадрата player'а в пикселях (на клиенте - его playerRect)
+     * @param generatorName алгоритм лабиринта, см. MazeGenerators
+     */
+    public RaceServer(InetSocketAddress address, int cols, int rows, int cellSize, int wallThickness,
+                      float playerSize, String generatorName, long seed) throws IOException {
+        this(address, cols, rows, cellSize, wallThickness, playerSize, generatorName, seed, TICK_MILLIS);
+    }
+
+    /** @param tickMillis период TICK; в тестах - больше самого теста, а TICK'и по requestTick */
+    RaceServer(InetSocketAddress address, int cols, int rows, int cellSize, int wallThickness,
+               float playerSize, String generatorName, long seed, int tickMillis) throws IOException {
+        tickNanos = tickMillis * 1_000_000L;
+        // клиентам уходит имя того генератора, которым лабиринт построен на самом деле
+        MazeGenerator generator = MazeGenerators.create(generatorName);
+        MazeBuilder builder = new MazeBuilder();
+        builder.setGenerator(generator);
+        maze = builder.build(cols, rows, cellSize, wallThickness, seed);
+        this.generatorName = generator.getName().getBytes(StandardCharsets.US_ASCII);
+        if(this.generatorName.length > RaceProtocol.MAX_NAME_BYTES)
+            throw new IllegalArgumentException("generator name is too long");
+        this.playerSize = playerSize;
+        float margin = (cellSize - playerSize) / 2f;
+        finish = new Box((cols - 1) * cellSize + margin, (rows - 1) * cellSize + margin,
+            cols * cellSize - margin, rows * cellSize - margin);
+        startX = startY = FixedPoint.toFixed(cellSize / 2f);
+
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+        }
+        catch(IOException e) {
+            selector.close();
+            throw e;
+        }
+        try {
+            serverChannel.configureBlocking(false);
+            // обычная ошибка здесь - порт уже занят; закрываем то, что успели открыть
+            serverChannel.socket().bind(address);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch(IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    //region ******************* ACTIONS ***********************************************************
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime() + tickNanos;
+        try {
+            while(running) {
+                long wait = (nextTick - System.nanoTime()) / 1_000_000L;
+                if(wait > 0) selector.select(wait);
+                else selector.selectNow();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) continue;
+                    if(key.isAcceptable()) accept();
+                    else handleKey(key);
+                }
+
+                long now = System.nanoTime();
+                if(tickRequested || now - nextTick >= 0) {
+                    tickRequested = false;
+                    broadcastTick();
+                    // если отстали больше чем на тик, не наверстываем пропущенные
+                    nextTick = Math.max(nextTick + tickNanos, now);
+                }
+            }
+        }
+        catch(IOException e) {
+            // сервер работает в своем потоке: исключение там некому поймать, поэтому только
+            // пишем в лог, а клиенты узнают об остановке по закрытым соединениям
+            LOG.log(Level.WARNING, "race server failed", e);
+        }
+        finally {
+            running = false;
+            closeAll();
+        }
+    }
+
+    /** Останавливает run и закрывает все соединения; можно вызывать из любого потока. */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /** Рассылает TICK, не дожидаясь периода; можно вызывать из любого потока. */
+    void requestTick() {
+        tickRequested = true;
+        selector.wakeup();
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    /** Сколько кадров MOVE проверено с запуска. */
+    public long getAcceptedMoves() {
+        return acceptedMoves;
+    }
+
+    /** Сколько точек пути проверено с запуска. */
+    public long getAcceptedSamples() {
+        return acceptedSamples;
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while((channel = serverChannel.accept()) != null) {
+            int id = freeId();
+            if(id < 0) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Player player = new Player(id, channel);
+            player.key = channel.register(selector, SelectionKey.OP_READ, player);
+            players[id] = player;
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        Player player = (Player) key.attachment();
+        try {
+            if(key.isReadable()) read(player);
+            if(key.isValid() && key.isWritable()) flush(player);
+        }
+        catch(IOException | RuntimeException e) {
+            // оборванное соединение или нарушение протокола - отключаем только этого клиента
+            disconnect(player);
+        }
+    }
+
+    private void read(Player player) throws IOException {
+        if(player.channel.read(player.in) < 0) {
+            disconnect(player);
+            return;
+        }
+
+        ByteBuffer in = player.in;
+        in.flip();
+        int length;
+        while(!player.left && (length = RaceProtocol.frameLength(in)) >= 0) {
+            int next = in.position() + RaceProtocol.LENGTH_BYTES + length;
+            in.position(in.position() + RaceProtocol.LENGTH_BYTES);
+            handleFrame(player, in.get() & 0xFF, in, next);
+            in.position(next);
+        }
+        in.compact();
+        // кадр, который никогда не поместится в буфер, - нарушение протокола
+        if(!in.hasRemaining()) throw new IOException("frame too long");
+        if(!player.left && player.out.position() > 0) flush(player);
+    }
+
+    /** @param end позиция конца кадра в in */
+    private void handleFrame(Player player, int type, ByteBuffer in, int end) throws IOException {
+        switch(type) {
+            case RaceProtocol.HELLO:
+                if(player.welcomed) return;
+                RaceProtocol.require(in, end, 1);
+                if((in.get() & 0xFF) != RaceProtocol.VERSION) throw new IOException("unsupported version");
+                welcome(player);
+                break;
+            case RaceProtocol.MOVE:
+                if(player.welcomed) move(player, in, end);
+                break;
+            case RaceProtocol.RESTART:
+                if(player.welcomed) player.restart();
+                break;
+            default:
+                throw new IOException("unknown frame " + type);
+        }
+    }
+
+    private void welcome(Player player) {
+        player.welcomed = true;
+        player.restart();
+        player.sentX = player.x;
+        player.sentY = player.y;
+        playerCount++;
+
+        ByteBuffer out = reserve(player,
+            RaceProtocol.LENGTH_BYTES + 1 + RaceProtocol.WELCOME_BYTES + 1 + generatorName.length);
+        if(out == null) return;
+        int start = RaceProtocol.begin(out, RaceProtocol.WELCOME);
+        out.putShort((short) player.id);
+        out.putInt(maze.getCols());
+        out.putInt(maze.getRows());
+        out.putLong(maze.getSeed());
+        out.putInt(maze.getCellSize());
+        out.putInt(maze.getWallThickness());
+        out.putInt(FixedPoint.toFixed(playerSize));
+        out.put((byte) generatorName.length);
+        out.put(generatorName);
+        RaceProtocol.end(out, start);
+
+        // положения на момент последнего TICK: следующие TICK'и придут сдвигами от них
+        out = reserve(player, RaceProtocol.LENGTH_BYTES + 3 + playerCount * RaceProtocol.ABSOLUTE_ENTRY_BYTES);
+        if(out == null) return;
+        start = RaceProtocol.begin(out, RaceProtocol.SNAPSHOT);
+        int countPosition = out.position();
+        out.putShort((short) 0);
+        int count = 0;
+        for(Player other : players) {
+            if(other == null || !other.welcomed || other.left) continue;
+            out.putShort((short) other.id);
+            out.put((byte) other.sentFlags);
+            out.putInt(other.sentX);
+            out.putInt(other.sentY);
+            count++;
+        }
+        out.putShort(countPosition, (short) count);
+        RaceProtocol.end(out, start);
+    }
+
+    private void move(Player player, ByteBuffer in, int end) throws IOException {
+        RaceProtocol.require(in, end, 1);
+        int count = in.get() & 0xFF;
+        RaceProtocol.require(in, end, count * RaceProtocol.MOVE_SAMPLE_BYTES);
+        // после касания стены или финиша ходы не принимаются до RESTART, но точки пути
+        // все равно сдвигают базу: клиент считает сдвиги от своей последней отправленной точки
+        for(int i = 0; i < count; i++) {
+            player.inputX += in.getShort();
+            player.inputY += in.getShort();
+            centers[2 * i] = FixedPoint.toFloat(player.inputX);
+            centers[2 * i + 1] = FixedPoint.toFloat(player.inputY);
+        }
+        if(player.crashed || player.finished || count == 0) return;
+
+        int result = player.engine.move(player.box, centers, count, finish);
+        if(result == MazeEngine.MOVE_WALL) player.crashed = true;
+        else if(result == MazeEngine.MOVE_FINISH) player.finished = true;
+        player.x = FixedPoint.toFixed(player.box.centerX());
+        player.y = FixedPoint.toFixed(player.box.centerY());
+        player.dirty = true;
+        acceptedMoves++;
+        acceptedSamples += count;
+    }
+
+    /** Собирает изменения с прошлого тика в один кадр и ставит его в очередь каждому клиенту. */
+    private void broadcastTick() {
+        ByteBuffer frame = tickFrame;
+        frame.clear();
+        int start = RaceProtocol.begin(frame, RaceProtocol.TICK);
+        int countPosition = frame.position();
+        frame.putShort((short) 0);
+        int count = 0;
+        for(int id = 0; id < players.length; id++) {
+            Player player = players[id];
+            if(player == null || !player.welcomed || (!player.dirty && !player.left)) continue;
+            // кадр с абсолютными записями всех MAX_PLAYERS игроков меньше MAX_FRAME, так что буфер
+            // до этого предела всегда вырастет
+            if(frame.remaining() < RaceProtocol.ABSOLUTE_ENTRY_BYTES) frame = tickFrame = RaceProtocol.ensure(
+                frame, RaceProtocol.ABSOLUTE_ENTRY_BYTES, RaceProtocol.LENGTH_BYTES + RaceProtocol.MAX_FRAME);
+            writeEntry(frame, player);
+            count++;
+            if(player.left) players[id] = null;
+        }
+        if(count == 0) return;
+        frame.putShort(countPosition, (short) count);
+        RaceProtocol.end(frame, start);
+        frame.flip();
+
+        for(Player player : players) {
+            if(player == null || !player.welcomed || player.left) continue;
+            ByteBuffer out = reserve(player, frame.remaining());
+            if(out == null) continue;
+            out.put(frame.duplicate());
+            try {
+                flush(player);
+            }
+            catch(IOException e) {
+                disconnect(player);
+            }
+        }
+    }
+
+    private void writeEntry(ByteBuffer frame, Player player) {
+        int flags = player.left ? RaceProtocol.FLAG_LEFT : player.getFlags();
+        int dx = player.x - player.sentX, dy = player.y - player.sentY;
+        boolean absolute = player.absolute || !RaceProtocol.fitsDelta(dx) || !RaceProtocol.fitsDelta(dy);
+        frame.putShort((short) player.id);
+        frame.put((byte) (absolute ? flags | RaceProtocol.FLAG_ABSOLUTE : flags));
+        if(absolute) {
+            frame.putInt(player.x);
+            frame.putInt(player.y);
+        }
+        else {
+            frame.putShort((short) dx);
+            frame.putShort((short) dy);
+        }
+        player.sentX = player.x;
+        player.sentY = player.y;
+        player.sentFlags = flags;
+        player.dirty = false;
+        player.absolute = false;
+    }
+
+    /** Место под bytes байт в выходном буфере player'а; null, если клиент отключен как отстающий. */
+    private ByteBuffer reserve(Player player, int bytes) {
+        ByteBuffer out = RaceProtocol.ensure(player.out, bytes, MAX_PENDING_OUTPUT);
+        if(out == null) {
+            disconnect(player);
+            return null;
+        }
+        player.out = out;
+        return out;
+    }
+
+    private void flush(Player player) throws IOException {
+        ByteBuffer out = player.out;
+        out.flip();
+        player.channel.write(out);
+        out.compact();
+        // не все ушло - дописываем, когда сокет будет готов
+        player.key.interestOps(out.position() > 0
+            ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+            : SelectionKey.OP_READ);
+    }
+
+    private void disconnect(Player player) {
+        if(player.left) return;
+        player.left = true;
+        player.key.cancel();
+        try {
+            player.channel.close();
+        }
+        catch(IOException ignored) { }
+        // id освободится после тика, в котором остальным сообщат об уходе
+        if(player.welcomed) playerCount--;
+        else players[player.id] = null;
+    }
+
+    private int freeId() {
+        for(int id = 0; id < players.length; id++)
+            if(players[id] == null) return id;
+        return -1;
+    }
+
+    private void closeAll() {
+        for(Player player : players)
+            if(player != null) disconnect(player);
+        try {
+            serverChannel.close();
+            selector.close();
+        }
+        catch(IOException ignored) { }
+    }
+
+    //endregion HELPERS
+
+    /** Соединение и состояние одного игрока; используется только потоком сервера. */
+    private final class Player {
+        private final int id;
+        private final SocketChannel channel;
+        private final MazeEngine engine = new MazeEngine();
+        private final Box box = new Box();
+        private final ByteBuffer in = ByteBuffer.allocate(INPUT_BUFFER);
+        private ByteBuffer out = ByteBuffer.allocate(OUTPUT_BUFFER);
+        private SelectionKey key;
+        private boolean welcomed, left;
+        private boolean crashed, finished;
+        // положение по проверке сервера
+        private int x, y;
+        // последняя точка, присланная клиентом: от нее считаются сдвиги в MOVE
+        private int inputX, inputY;
+        // что разослано в последнем TICK
+        private int sentX, sentY, sentFlags;
+        // изменился с прошлого TICK; absolute - следующая запись должна быть абсолютной
+        private boolean dirty, absolute;
+
+        private Player(int id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+            engine.setMaze(maze);
+        }
+
+        private void restart() {
+            crashed = false;
+            finished = false;
+            engine.restart();
+            float half = playerSize / 2f;
+            float center = FixedPoint.toFloat(startX);
+            box.set(center - half, center - half, center + half, center + half);
+            x = inputX = startX;
+            y = inputY = startY;
+            dirty = true;
+            absolute = true;
+        }
+
+        private int getFlags() {
+            return (crashed ? RaceProtocol.FLAG_CRASHED : 0) | (finished ? RaceProtocol.FLAG_FINISHED : 0);
+        }
+    }
+}
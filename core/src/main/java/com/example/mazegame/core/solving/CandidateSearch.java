@@ -0,0 +1,207 @@
+package com.example.mazegame.core.solving;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подбор лабиринта под заданную сложность: кандидаты с seed'ами baseSeed, baseSeed + 1, ...
+ * генерируются и оцениваются параллельно на ForkJoinPool раундами, пока не выйдет время.
+ * У каждого потока свои генератор, сетка и solver; они переживают поиск и пересоздаются,
+ * только когда меняется алгоритм или размеры. Из равных по оценке побеждает меньший
+ * seed, так что результат не зависит от того, какой поток что посчитал, а найденный
+ * лабиринт воспроизводится по своему seed'у.
+ */
+public class CandidateSearch {
+
+    // сколько кандидатов один поток оценивает без дальнейшего дробления задачи
+    private static final int LEAF_CANDIDATES = 2;
+    // раунд - по несколько листовых задач на поток, чтобы потоки не простаивали в конце раунда
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    // пустой, пока поток пула не оценил ни одного кандидата
+    private final ThreadLocal<Worker> workers = new ThreadLocal<>();
+
+    public CandidateSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Лучший найденный кандидат. */
+    public static final class Result {
+        private final long seed;
+        private final Difficulty difficulty;
+        private final float score;
+        private final int evaluated;
+
+        private Result(long seed, Difficulty difficulty, float score, int evaluated) {
+            this.seed = seed;
+            this.difficulty = difficulty;
+            this.score = score;
+            this.evaluated = evaluated;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        /** Расстояние до цели (Difficulty.distanceTo), меньше - лучше. */
+        public float getScore() {
+            return score;
+        }
+
+        /** Сколько кандидатов успели оценить за отведенное время. */
+        public int getEvaluated() {
+            return evaluated;
+        }
+
+        @Override
+        public String toString() {
+            return "seed " + seed + " (" + difficulty + "), score " + score + ", " + evaluated + " candidates";
+        }
+    }
+
+    /**
+     * Ищет лабиринт cols x rows алгоритмом generatorName, ближайший к target, пока не пройдет
+     * budgetNanos (хотя бы один кандидат оценивается всегда).
+     * @throws CancellationException если вызывающий поток прервали
+     */
+    public Result search(String generatorName, int cols, int rows, Difficulty target, long baseSeed, long budgetNanos) {
+        Job job = new Job(workers, generatorName, cols, rows, target, baseSeed, System.nanoTime() + budgetNanos);
+
+        int roundSize = pool.getParallelism() * TASKS_PER_THREAD * LEAF_CANDIDATES;
+        Candidate best = null;
+        for(int first = 0; best == null || System.nanoTime() < job.deadline; first += roundSize) {
+            if(Thread.currentThread().isInterrupted()) throw new CancellationException();
+            best = better(best, pool.invoke(new SearchTask(job, first, first + roundSize)));
+        }
+        return new Result(baseSeed + best.index, best.difficulty, best.score, job.evaluated.get());
+    }
+
+    //region ******************* HELPERS ***********************************************************
+
+    /** Меньшая оценка, а при равенстве - меньший seed (его кандидат раньше в очереди). */
+    private static Candidate better(Candidate a, Candidate b) {
+        if(a == null) return b;
+        if(b == null) return a;
+        return b.score < a.score || (b.score == a.score && b.index < a.index) ? b : a;
+    }
+
+    //endregion HELPERS
+
+    /** Генератор, сетка и solver одного потока пула. */
+    private static final class Worker {
+        // имя, по которому создан генератор (неизвестное имя дает алгоритм по умолчанию с другим getName)
+        private final String generatorName;
+        private final MazeGenerator generator;
+        private final MazeGrid grid;
+        private final MazeSolver solver = new MazeSolver();
+
+        private Worker(String generatorName, int cols, int rows) {
+            this.generatorName = generatorName;
+            generator = MazeGenerators.create(generatorName);
+            grid = new MazeGrid(cols, rows);
+        }
+
+        private boolean accepts(String generatorName, int cols, int rows) {
+            return this.generatorName.equals(generatorName) && grid.getCols() == cols && grid.getRows() == rows;
+        }
+
+        private Difficulty evaluate(long seed) {
+            grid.reset();
+            generator.setSeed(seed);
+            generator.generate(grid);
+            return Difficulty.measure(grid, solver);
+        }
+    }
+
+    private static final class Candidate {
+        private final int index;
+        private final Difficulty difficulty;
+        private final float score;
+
+        private Candidate(int index, Difficulty difficulty, float score) {
+            this.index = index;
+            this.difficulty = difficulty;
+            this.score = score;
+        }
+    }
+
+    /** Параметры одного поиска, общие для всех его задач. */
+    private static final class Job {
+        private final ThreadLocal<Worker> workers;
+        private final String generatorName;
+        private final int cols, rows;
+        private final Difficulty target;
+        private final long baseSeed, deadline;
+        private final AtomicInteger evaluated = new AtomicInteger();
+
+        private Job(ThreadLocal<Worker> workers, String generatorName, int cols, int rows, Difficulty target,
+                    long baseSeed, long deadline) {
+            this.workers = workers;
+            this.generatorName = generatorName;
+            this.cols = cols;
+            this.rows = rows;
+            this.target = target;
+            this.baseSeed = baseSeed;
+            this.deadline = deadline;
+        }
+
+        /** Worker текущего потока, подходящий этому поиску. */
+        private Worker worker() {
+            Worker worker = workers.get();
+            if(worker == null || !worker.accepts(generatorName, cols, rows)) {
+                worker = new Worker(generatorName, cols, rows);
+                workers.set(worker);
+            }
+            return worker;
+        }
+    }
+
+    /**
+     * Делит диапазон кандидатов [from, to) пополам, пока он не станет листовым.
+     * Результат - лучший кандидат диапазона или null, если ни одного не успели оценить.
+     */
+    private static final class SearchTask extends RecursiveTask<Candidate> {
+        private static final long serialVersionUID = 1L;
+
+        private final Job job;
+        private final int from, to;
+
+        private SearchTask(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Candidate compute() {
+            if(to - from > LEAF_CANDIDATES) {
+                int middle = (from + to) >>> 1;
+                SearchTask left = new SearchTask(job, from, middle);
+                left.fork();
+                Candidate right = new SearchTask(job, middle, to).compute();
+                return better(left.join(), right);
+            }
+
+            Worker worker = job.worker();
+            Candidate best = null;
+            for(int i = from; i < to; i++) {
+                // самый первый кандидат оцениваем всегда, чтобы было что вернуть
+                if(i > 0 && System.nanoTime() > job.deadline) break;
+                Difficulty difficulty = worker.evaluate(job.baseSeed + i);
+                job.evaluated.incrementAndGet();
+                best = better(best, new Candidate(i, difficulty, difficulty.distanceTo(job.target)));
+            }
+            return best;
+        }
+    }
+}
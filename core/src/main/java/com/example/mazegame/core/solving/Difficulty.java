@@ -0,0 +1,69 @@
+package com.example.mazegame.core.solving;
+
+import com.example.mazegame.core.MazeGrid;
+
+/**
+ * Сложность лабиринта в долях от числа ячеек: длина решения (от угла до угла), тупики
+ * (ячейки с одним выходом) и развилки (три выхода и больше). Доли не зависят от размера,
+ * поэтому одна и та же цель подходит для лабиринтов разной величины.
+ */
+public class Difficulty {
+
+    // чтобы нулевая цель не давала деления на ноль
+    private static final float MIN_TARGET = 1e-3f;
+
+    private final float solution, deadEnds, branching;
+
+    public Difficulty(float solution, float deadEnds, float branching) {
+        this.solution = solution;
+        this.deadEnds = deadEnds;
+        this.branching = branching;
+    }
+
+    /** Решает grid через solver (его поле расстояний после вызова - от ячейки 0). */
+    public static Difficulty measure(MazeGrid grid, MazeSolver solver) {
+        int size = grid.size();
+        solver.solve(grid, 0);
+        int solution = solver.findPath(grid, size - 1);
+
+        int deadEnds = 0, junctions = 0;
+        for(int cell = 0; cell < size; cell++) {
+            int exits = 4 - Integer.bitCount(grid.walls(cell));
+            if(exits == 1) deadEnds++;
+            else if(exits >= 3) junctions++;
+        }
+        return new Difficulty((float) solution / size, (float) deadEnds / size, (float) junctions / size);
+    }
+
+    /** Сумма квадратов относительных отклонений от target; 0 - полное совпадение. */
+    public float distanceTo(Difficulty target) {
+        return square(solution, target.solution) + square(deadEnds, target.deadEnds)
+            + square(branching, target.branching);
+    }
+
+    //region ******************* GETTERS ***********************************************************
+
+    public float getSolution() {
+        return solution;
+    }
+
+    public float getDeadEnds() {
+        return deadEnds;
+    }
+
+    public float getBranching() {
+        return branching;
+    }
+
+    @Override
+    public String toString() {
+        return "solution " + solution + ", dead ends " + deadEnds + ", branching " + branching;
+    }
+
+    //endregion GETTERS
+
+    private static float square(float value, float target) {
+        float error = (value - target) / Math.max(target, MIN_TARGET);
+        return error * error;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.mazegame.core.solving;
+
+import com.example.mazegame.core.MazeGrid;
+import java.util.Arrays;
+
+/**
+ * Обход сетки: поле расстояний от стартовой ячейки до всех остальных и кратчайший
+ * путь до любой из них. Очередь и результаты - массивы int, переиспользуемые между вызовами,
+ * поэтому на ячейку не создается ни одного объекта.
+ */
+public class MazeSolver {
+
+    public static final int UNREACHABLE = -1;
+
+    private static final int INITIAL_QUEUE = 1024;
+    private static final int NO_PARENT = 4;
+    // для маски стен ячейки и направления на родителя (или NO_PARENT): направления проходов
+    // к детям по 2 бита, начиная с младших, и их число в битах 8 и выше
+    private static final int[] CHILDREN = new int[16 * 5];
+
+    static {
+        for(int walls = 0; walls < 16; walls++)
+            for(int parent = 0; parent <= NO_PARENT; parent++) {
+                int packed = 0, count = 0;
+                for(int dir = 0; dir < 4; dir++)
+                    if((walls & (1 << dir)) == 0 && dir != parent) packed |= dir << (2 * count++);
+                CHILDREN[walls * 5 + parent] = count << 8 | packed;
+            }
+    }
+
+    private int[] distances = new int[0];
+    // посещенные ячейки битами: проверка соседа читает 2 МБ на 16M ячеек, а не поле расстояний,
+    // поэтому само поле расстояний во время обхода только пишется
+    private long[] visited = new long[0];
+    // кольцевая очередь поиска в ширину или стек обхода в глубину; фронт обхода в лабиринте
+    // обычно намного меньше числа ячеек
+    private int[] queue = new int[INITIAL_QUEUE];
+    private int head, count;
+    private int[] path = new int[0];
+    private int pathLength;
+    private int start, farthest, reachedCount;
+
+    //region ******************* ACTIONS ***********************************************************
+
+    /**
+     * Считает расстояния (в шагах между ячейками) от start до всех ячеек grid.
+     * Идеальный лабиринт - дерево: путь до каждой ячейки единственный, и расстояние - просто
+     * глубина в обходе в глубину, который идет вдоль коридоров и поэтому читает соседние
+     * ячейки подряд. Если обход находит цикл, расстояния считаются поиском в ширину.
+     */
+    public void solve(MazeGrid grid, int start) {
+        int size = grid.size();
+        if(distances.length < size) distances = new int[size];
+        int words = (size + 63) >>> 6;
+        if(visited.length < words) visited = new long[words];
+        this.start = start;
+        pathLength = 0;
+
+        if(!walkTree(grid, start)) walkLevels(grid, start);
+        if(reachedCount < size) markUnreachable(size);
+    }
+
+    /**
+     * Восстанавливает кратчайший путь от start до target по полю расстояний (после solve).
+     * @return длина пути в ячейках (0, если target недостижима); сам путь - getPath()
+     */
+    public int findPath(MazeGrid grid, int target) {
+        int distance = distances[target];
+        if(distance == UNREACHABLE) return pathLength = 0;
+
+        pathLength = distance + 1;
+        if(path.length < pathLength) path = new int[pathLength];
+        int cell = target;
+        path[distance] = cell;
+        // от цели идем к ячейке, которая на шаг ближе к старту
+        for(int d = distance - 1; d >= 0; d--) {
+            for(int dir = 0; dir < 4; dir++) {
+                if(grid.hasWall(cell, dir)) continue;
+                int next = grid.neighbour(cell, dir);
+                if(distances[next] == d) {
+                    cell = next;
+                    break;
+                }
+            }
+            path[d] = cell;
+        }
+        return pathLength;
+    }
+
+    //endregion ACTIONS
+
+    //region ******************* GETTERS ***********************************************************
+
+    /** Поле расстояний: первые grid.size() элементов, UNREACHABLE для недостижимых ячеек. */
+    public int[] getDistances() {
+        return distances;
+    }
+
+    public int getDistance(int cell) {
+        return distances[cell];
+    }
+
+    /** Ячейки пути от start до target включительно: первые getPathLength() элементов. */
+    public int[] getPath() {
+        return path;
+    }
+
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    /** Самая далекая от старта ячейка - например, лучшее место для финиша. */
+    public int getFarthestCell() {
+        return farthest;
+    }
+
+    /** Сколько ячеек достижимо из старта (в идеальном лабиринте - все). */
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    //endregion GETTERS
+
+    //region ******************* HELPERS ***********************************************************
+
+    /**
+     * Обход в глубину со стеком в queue; в записи стека ячейка и направление на родителя.
+     * @return false, если в лабиринте есть цикл (расстояния тогда неверны)
+     */
+    private boolean walkTree(MazeGrid grid, int start) {
+        int size = grid.size();
+        Arrays.fill(visited, 0, (size + 63) >>> 6, 0L);
+        int cols = grid.getCols();
+        int[] distances = this.distances;
+        long[] visited = this.visited;
+
+        visited[start >>> 6] |= 1L << start;
+        distances[start] = 0;
+        farthest = start;
+        int maxDistance = 0;
+        reachedCount = 1;
+        count = 0;
+        // у стартовой ячейки родителя нет: NO_PARENT не совпадает ни с одним направлением
+        pushStack(start << 3 | NO_PARENT);
+        int[] offsets = { -1, -cols, 1, cols };
+        while(count > 0) {
+            int entry = queue[--count];
+            int cell = entry >>> 3;
+            int distance = distances[cell] + 1;
+
+            // проходы из ячейки, кроме прохода к родителю, одним чтением таблицы - без ветвлений по стенам
+            int children = CHILDREN[grid.walls(cell) * 5 + (entry & 0b111)];
+            int childCount = children >>> 8;
+            reachedCount += childCount;
+            for(int k = childCount; k > 0; k--, children >>>= 2) {
+                int dir = children & 0b11;
+                int next = cell + offsets[dir];
+                long bit = 1L << next;
+                // уже посещенный сосед, не являющийся родителем, - цикл
+                if((visited[next >>> 6] & bit) != 0) return false;
+                visited[next >>> 6] |= bit;
+                distances[next] = distance;
+                if(distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = next;
+                }
+                pushStack(next << 3 | MazeGrid.opposite(dir));
+            }
+        }
+        return true;
+    }
+
+    /** Поиск в ширину по уровням: все ячейки уровня на одном расстоянии, его не нужно читать из поля. */
+    private void walkLevels(MazeGrid grid, int start) {
+        Arrays.fill(visited, 0, (grid.size() + 63) >>> 6, 0L);
+        int cols = grid.getCols();
+        int[] distances = this.distances;
+        long[] visited = this.visited;
+
+        visited[start >>> 6] |= 1L << start;
+        reachedCount = 1;
+        head = 0;
+        count = 0;
+        push(start);
+        int distance = 0, cell = start;
+        while(count > 0) {
+            for(int level = count; level > 0; level--) {
+                cell = queue[head];
+                head = (head + 1) & (queue.length - 1);
+                count--;
+                distances[cell] = distance;
+
+                // внешний контур всегда закрыт, поэтому сосед за открытой стеной существует
+                int walls = grid.walls(cell);
+                if((walls & (1 << MazeGrid.DIR_LEFT)) == 0) visit(visited, cell - 1);
+                if((walls & (1 << MazeGrid.DIR_TOP)) == 0) visit(visited, cell - cols);
+                if((walls & (1 << MazeGrid.DIR_RIGHT)) == 0) visit(visited, cell + 1);
+                if((walls & (1 << MazeGrid.DIR_BOTTOM)) == 0) visit(visited, cell + cols);
+            }
+            distance++;
+        }
+        // последняя обработанная ячейка - с последнего, самого дальнего уровня
+        farthest = cell;
+    }
+
+    /** Недостижимые ячейки не записаны обходом; в идеальном лабиринте их нет, и сюда не попадаем. */
+    private void markUnreachable(int size) {
+        for(int cell = 0; cell < size; cell++)
+            if((visited[cell >>> 6] & (1L << cell)) == 0) distances[cell] = UNREACHABLE;
+    }
+
+    private void visit(long[] visited, int cell) {
+        long bit = 1L << cell;
+        if((visited[cell >>> 6] & bit) != 0) return;
+        visited[cell >>> 6] |= bit;
+        reachedCount++;
+        push(cell);
+    }
+
+    private void pushStack(int entry) {
+        if(count == queue.length) queue = Arrays.copyOf(queue, queue.length * 2);
+        queue[count++] = entry;
+    }
+
+    private void push(int cell) {
+        if(count == queue.length) growQueue();
+        queue[(head + count) & (queue.length - 1)] = cell;
+        count++;
+    }
+
+    /** Удваивает очередь (размер всегда степень двойки), разворачивая кольцо в начало. */
+    private void growQueue() {
+        int[] grown = new int[queue.length * 2];
+        int tail = queue.length - head;
+        System.arraycopy(queue, head, grown, 0, tail);
+        System.arraycopy(queue, 0, grown, tail, head);
+        queue = grown;
+        head = 0;
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,61 @@
+package com.example.mazegame.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Проверки сетки для тестов генераторов и формата. */
+public final class MazeAssert {
+
+    private MazeAssert() {}
+
+    /**
+     * Идеальный лабиринт: внешний контур замкнут, стены с двух сторон согласованы,
+     * проходов ровно size - 1 и все ячейки достижимы из нулевой - то есть это дерево.
+     */
+    public static void assertPerfect(MazeGrid grid) {
+        int size = grid.size();
+        int passages = 0;
+        for(int cell = 0; cell < size; cell++)
+            for(int dir = 0; dir < 4; dir++) {
+                if(!grid.hasNeighbour(cell, dir)) {
+                    assertTrue("open outer wall at " + cell, grid.hasWall(cell, dir));
+                    continue;
+                }
+                int next = grid.neighbour(cell, dir);
+                assertEquals("one-sided wall at " + cell, grid.hasWall(cell, dir),
+                    grid.hasWall(next, MazeGrid.opposite(dir)));
+                if(!grid.hasWall(cell, dir) && next > cell) passages++;
+            }
+        assertEquals("passages", size - 1, passages);
+        assertEquals("reachable cells", size, countReachable(grid, 0));
+    }
+
+    /** Стены двух сеток одного размера совпадают. */
+    public static void assertSameWalls(MazeGrid expected, MazeGrid actual) {
+        assertEquals(expected.getCols(), actual.getCols());
+        assertEquals(expected.getRows(), actual.getRows());
+        for(int cell = 0; cell < expected.size(); cell++)
+            assertEquals("walls of " + cell, expected.walls(cell), actual.walls(cell));
+    }
+
+    public static int countReachable(MazeGrid grid, int start) {
+        boolean[] seen = new boolean[grid.size()];
+        int[] stack = new int[grid.size()];
+        int top = 0, count = 0;
+        stack[top++] = start;
+        seen[start] = true;
+        while(top > 0) {
+            int cell = stack[--top];
+            count++;
+            for(int dir = 0; dir < 4; dir++) {
+                if(grid.hasWall(cell, dir)) continue;
+                assertTrue("passage out of the grid at " + cell, grid.hasNeighbour(cell, dir));
+                int next = grid.neighbour(cell, dir);
+                if(seen[next]) continue;
+                seen[next] = true;
+                stack[top++] = next;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mazegame.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MazeGridTest {
+
+    @Test
+    public void carveOpensBothSides() {
+        MazeGrid grid = new MazeGrid(3, 2);
+        int cell = grid.index(1, 0);
+        grid.carve(cell, MazeGrid.DIR_BOTTOM);
+
+        assertFalse(grid.hasWall(cell, MazeGrid.DIR_BOTTOM));
+        assertFalse(grid.hasWall(grid.index(1, 1), MazeGrid.DIR_TOP));
+        assertTrue(grid.hasWall(cell, MazeGrid.DIR_LEFT));
+    }
+
+    @Test
+    public void neighboursStopAtTheBorder() {
+        MazeGrid grid = new MazeGrid(3, 2);
+        assertFalse(grid.hasNeighbour(grid.index(0, 0), MazeGrid.DIR_LEFT));
+        assertFalse(grid.hasNeighbour(grid.index(0, 0), MazeGrid.DIR_TOP));
+        assertFalse(grid.hasNeighbour(grid.index(2, 1), MazeGrid.DIR_RIGHT));
+        assertFalse(grid.hasNeighbour(grid.index(2, 1), MazeGrid.DIR_BOTTOM));
+        assertEquals(grid.index(1, 1), grid.neighbour(grid.index(0, 1), MazeGrid.DIR_RIGHT));
+        assertEquals(grid.index(2, 0), grid.neighbour(grid.index(2, 1), MazeGrid.DIR_TOP));
+    }
+
+    @Test
+    public void visitAndParentDoNotTouchWalls() {
+        MazeGrid grid = new MazeGrid(2, 2);
+        grid.carve(0, MazeGrid.DIR_RIGHT);
+        int walls = grid.walls(1);
+        grid.visit(1);
+        grid.setParent(1, MazeGrid.DIR_LEFT);
+
+        assertTrue(grid.isVisited(1));
+        assertEquals(MazeGrid.DIR_LEFT, grid.parent(1));
+        assertEquals(walls, grid.walls(1));
+    }
+
+    @Test
+    public void resetRestoresAllWalls() {
+        MazeGrid grid = new MazeGrid(2, 2);
+        grid.carve(0, MazeGrid.DIR_RIGHT);
+        grid.visit(0);
+        grid.reset();
+
+        for(int cell = 0; cell < grid.size(); cell++) {
+            assertEquals(0b1111, grid.walls(cell));
+            assertFalse(grid.isVisited(cell));
+        }
+    }
+
+    @Test
+    public void copyWallsPlacesTileAtOffset() {
+        MazeGrid tile = new MazeGrid(2, 3);
+        tile.carve(tile.index(0, 0), MazeGrid.DIR_RIGHT);
+        tile.carve(tile.index(1, 0), MazeGrid.DIR_BOTTOM);
+        tile.carve(tile.index(1, 1), MazeGrid.DIR_BOTTOM);
+        tile.carve(tile.index(0, 2), MazeGrid.DIR_RIGHT);
+        tile.carve(tile.index(0, 1), MazeGrid.DIR_BOTTOM);
+        tile.visit(0);
+
+        MazeGrid grid = new MazeGrid(5, 4);
+        grid.copyWalls(tile, 3, 1);
+        for(int row = 0; row < 3; row++)
+            for(int col = 0; col < 2; col++)
+                assertEquals(tile.walls(tile.index(col, row)), grid.walls(grid.index(3 + col, 1 + row)));
+        // отметки о посещении не переносятся, а ячейки вне тайла не меняются
+        assertFalse(grid.isVisited(grid.index(3, 1)));
+        assertEquals(0b1111, grid.walls(grid.index(2, 1)));
+        assertEquals(0b1111, grid.walls(grid.index(3, 0)));
+    }
+}
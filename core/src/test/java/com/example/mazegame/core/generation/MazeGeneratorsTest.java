@@ -0,0 +1,81 @@
+package com.example.mazegame.core.generation;
+
+import static com.example.mazegame.core.MazeAssert.assertPerfect;
+import static com.example.mazegame.core.MazeAssert.assertSameWalls;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.example.mazegame.core.MazeGrid;
+import org.junit.Test;
+
+/** Все алгоритмы из MazeGenerators: идеальный лабиринт любого размера и повторяемость по seed'у. */
+public class MazeGeneratorsTest {
+
+    private static final String[] NAMES = {
+        "backtracker", "eller", "kruskal", "wilson", "binary-tree", "sidewinder", "tiled"
+    };
+    // вырожденные, неквадратные и не кратные плитке TiledGenerator размеры
+    private static final int[][] SIZES = { { 1, 1 }, { 1, 7 }, { 9, 1 }, { 2, 2 }, { 37, 23 }, { 65, 129 } };
+
+    @Test
+    public void createKnowsEveryName() {
+        for(String name : NAMES) assertEquals(name, MazeGenerators.create(name).getName());
+    }
+
+    @Test
+    public void unknownNameFallsBackToBacktracker() {
+        assertEquals("backtracker", MazeGenerators.create("no-such-generator").getName());
+    }
+
+    @Test
+    public void generatesPerfectMazes() {
+        for(String name : NAMES) {
+            MazeGenerator generator = MazeGenerators.create(name);
+            for(int[] size : SIZES)
+                for(long seed = 1; seed <= 3; seed++) {
+                    MazeGrid grid = generate(generator, size[0], size[1], seed);
+                    try {
+                        assertPerfect(grid);
+                    }
+                    catch(AssertionError e) {
+                        throw new AssertionError(name + " " + size[0] + "x" + size[1] + " seed " + seed, e);
+                    }
+                }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameMaze() {
+        for(String name : NAMES) {
+            MazeGenerator generator = MazeGenerators.create(name);
+            MazeGrid first = generate(generator, 40, 30, 42L);
+            // тот же экземпляр после другого лабиринта (буферы переиспользуются) и новый экземпляр
+            generate(generator, 17, 50, 7L);
+            assertSameWalls(first, generate(generator, 40, 30, 42L));
+            assertSameWalls(first, generate(MazeGenerators.create(name), 40, 30, 42L));
+        }
+    }
+
+    @Test
+    public void differentSeedsGiveDifferentMazes() {
+        for(String name : NAMES) {
+            MazeGenerator generator = MazeGenerators.create(name);
+            MazeGrid first = generate(generator, 40, 30, 1L);
+            MazeGrid second = generate(generator, 40, 30, 2L);
+            assertNotEquals(name, fingerprint(first), fingerprint(second));
+        }
+    }
+
+    static MazeGrid generate(MazeGenerator generator, int cols, int rows, long seed) {
+        MazeGrid grid = new MazeGrid(cols, rows);
+        generator.setSeed(seed);
+        generator.generate(grid);
+        return grid;
+    }
+
+    private static long fingerprint(MazeGrid grid) {
+        long hash = 1;
+        for(int cell = 0; cell < grid.size(); cell++) hash = hash * 31 + grid.walls(cell);
+        return hash;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mazegame.core.generation;
+
+import static com.example.mazegame.core.MazeAssert.assertPerfect;
+import static com.example.mazegame.core.MazeAssert.assertSameWalls;
+import static org.junit.Assert.fail;
+
+import com.example.mazegame.core.MazeGrid;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Плитки, не кратные сетке (обрезанные справа и снизу), и сшивка их в один лабиринт. */
+public class TiledGeneratorTest {
+
+    private static final int TILE_SIZE = 7;
+
+    private static ForkJoinPool single, parallel;
+
+    @BeforeClass
+    public static void startPools() {
+        single = new ForkJoinPool(1);
+        parallel = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPools() {
+        single.shutdownNow();
+        parallel.shutdownNow();
+    }
+
+    @Test
+    public void raggedTilesStitchIntoPerfectMaze() {
+        int[][] sizes = { { 30, 23 }, { 8, 8 }, { 6, 6 }, { 1, 50 }, { 50, 1 }, { 15, 22 } };
+        TiledGenerator generator = new TiledGenerator(parallel, TILE_SIZE);
+        for(int[] size : sizes)
+            for(long seed = 1; seed <= 5; seed++)
+                assertPerfect(MazeGeneratorsTest.generate(generator, size[0], size[1], seed));
+    }
+
+    @Test
+    public void resultDoesNotDependOnParallelism() {
+        MazeGrid sequential = MazeGeneratorsTest.generate(new TiledGenerator(single, TILE_SIZE), 45, 31, 99L);
+        MazeGrid concurrent = MazeGeneratorsTest.generate(new TiledGenerator(parallel, TILE_SIZE), 45, 31, 99L);
+        assertSameWalls(sequential, concurrent);
+    }
+
+    @Test
+    public void interruptedCallerCancelsTiles() {
+        // границ меньше, чем шагов между проверками в сшивке: отменить могут только плитки
+        TiledGenerator generator = new TiledGenerator(parallel, TiledGenerator.DEFAULT_TILE_SIZE);
+        Thread.currentThread().interrupt();
+        try {
+            MazeGeneratorsTest.generate(generator, 1024, 1024, 1L);
+            fail("generation was not cancelled");
+        }
+        catch(CancellationException expected) { }
+        finally {
+            Thread.interrupted();
+        }
+    }
+}
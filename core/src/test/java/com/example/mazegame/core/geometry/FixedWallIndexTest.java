@@ -0,0 +1,130 @@
+package com.example.mazegame.core.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.KruskalGenerator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Запросы индекса против перебора всех стен. Координаты - целые пиксели, как и стены
+ * лабиринта, поэтому касания краями (самые спорные случаи) встречаются постоянно.
+ */
+public class FixedWallIndexTest {
+
+    private static final int COLS = 12, ROWS = 10;
+    private static final int CELL_SIZE = 40, WALL_THICKNESS = 4, PLAYER_SIZE = 18;
+    // сдвиг за один запрос - до двух ячеек, чтобы путь пересекал несколько корзин
+    private static final int MAX_MOVE = 2 * CELL_SIZE;
+    private static final int CASES = 20000;
+
+    private final Random random = new Random(7);
+    private FixedWallIndex index;
+    private int[][] walls;
+
+    @Before
+    public void buildIndex() {
+        MazeGrid grid = new MazeGrid(COLS, ROWS);
+        KruskalGenerator generator = new KruskalGenerator();
+        generator.setSeed(3L);
+        generator.generate(grid);
+        List<Box> boxes = WallGeometry.build(grid, WALL_THICKNESS, CELL_SIZE).getWalls();
+        index = new FixedWallIndex(boxes, CELL_SIZE);
+
+        walls = new int[boxes.size()][];
+        for(int i = 0; i < walls.length; i++) {
+            Box box = boxes.get(i);
+            walls[i] = new int[] {
+                FixedPoint.toFixed(box.left), FixedPoint.toFixed(box.top),
+                FixedPoint.toFixed(box.right), FixedPoint.toFixed(box.bottom)
+            };
+        }
+    }
+
+    @Test
+    public void sweepFindsFirstHitLikeBruteForce() {
+        for(int i = 0; i < CASES; i++) {
+            int left = pixel(COLS * CELL_SIZE), top = pixel(ROWS * CELL_SIZE);
+            int right = left + PLAYER_SIZE * FixedPoint.ONE, bottom = top + PLAYER_SIZE * FixedPoint.ONE;
+            // каждый четвертый сдвиг - вдоль оси, каждый восьмой - нулевой
+            int dx = i % 8 == 0 ? 0 : move(), dy = i % 4 == 1 ? 0 : i % 8 == 0 ? 0 : move();
+
+            double expected = Double.NaN;
+            for(int[] wall : walls) {
+                double time = hitTime(wall, left, top, right, bottom, dx, dy);
+                if(!Double.isNaN(time) && !(time >= expected)) expected = time;
+            }
+            String query = "rect " + left + "," + top + " move " + dx + "," + dy;
+            boolean hit = index.sweep(left, top, right, bottom, dx, dy);
+            assertEquals(query, !Double.isNaN(expected), hit);
+            if(hit) assertEquals(query, expected, index.getHitNum() / (double) index.getHitDen(), 0.0);
+        }
+    }
+
+    @Test
+    public void freeRegionContainsRectAndNoWalls() {
+        int[] region = new int[4];
+        for(int i = 0; i < CASES; i++) {
+            int left = pixel(COLS * CELL_SIZE), top = pixel(ROWS * CELL_SIZE);
+            int right = left + PLAYER_SIZE * FixedPoint.ONE, bottom = top + PLAYER_SIZE * FixedPoint.ONE;
+            int margin = random.nextInt(MAX_MOVE + 1) * FixedPoint.ONE;
+            String query = "rect " + left + "," + top + " margin " + margin;
+
+            boolean blocked = false;
+            for(int[] wall : walls) blocked |= intersects(wall, left, top, right, bottom);
+            assertEquals(query, !blocked, index.freeRegion(left, top, right, bottom, margin, region));
+            if(blocked) continue;
+
+            assertTrue(query, region[0] >= left - margin && region[0] <= left);
+            assertTrue(query, region[1] >= top - margin && region[1] <= top);
+            assertTrue(query, region[2] <= right + margin && region[2] >= right);
+            assertTrue(query, region[3] <= bottom + margin && region[3] >= bottom);
+            for(int[] wall : walls)
+                assertFalse(query, intersects(wall, region[0], region[1], region[2], region[3]));
+        }
+    }
+
+    /**
+     * Момент первого касания стены (доля пути от 0 до 1) по определению: на каждой оси
+     * проекции пересекаются строго на открытом интервале времени, и интервалы осей перекрываются.
+     * Все числа меньше 2^24, поэтому равные дроби дают равные double, а разные - разные.
+     * @return NaN, если касания нет
+     */
+    private static double hitTime(int[] wall, int left, int top, int right, int bottom, int dx, int dy) {
+        double[] x = axis(wall[0], wall[2], left, right, dx);
+        double[] y = axis(wall[1], wall[3], top, bottom, dy);
+        if(x == null || y == null) return Double.NaN;
+        double enter = Math.max(x[0], y[0]), exit = Math.min(x[1], y[1]);
+        if(enter >= exit || enter >= 1 || exit <= 0) return Double.NaN;
+        return Math.max(enter, 0);
+    }
+
+    /** Открытый интервал времени, когда проекции пересекаются; null - никогда. */
+    private static double[] axis(int wallFrom, int wallTo, int from, int to, int delta) {
+        if(delta == 0)
+            return from < wallTo && wallFrom < to
+                ? new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY }
+                : null;
+        double a = (wallFrom - to) / (double) delta, b = (wallTo - from) / (double) delta;
+        return new double[] { Math.min(a, b), Math.max(a, b) };
+    }
+
+    /** Строгое пересечение, как Box.intersects: касание краями не считается. */
+    private static boolean intersects(int[] wall, int left, int top, int right, int bottom) {
+        return wall[0] < right && left < wall[2] && wall[1] < bottom && top < wall[3];
+    }
+
+    /** Целый пиксель в [-CELL_SIZE, extent] в FixedPoint - с выходом за внешний контур. */
+    private int pixel(int extent) {
+        return (random.nextInt(extent + 2 * CELL_SIZE) - CELL_SIZE) * FixedPoint.ONE;
+    }
+
+    private int move() {
+        return (random.nextInt(2 * MAX_MOVE + 1) - MAX_MOVE) * FixedPoint.ONE;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.mazegame.core.io;
+
+import static com.example.mazegame.core.MazeAssert.assertSameWalls;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.BacktrackerGenerator;
+import com.example.mazegame.core.generation.MazeGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LevelPackTest {
+
+    private static final int COLS = 12, ROWS = 9;
+    private static final long[] SEEDS = { 5L, -1L, 1234567890123L, 0L };
+    // заголовок набора: magic, version, reserved, count; за ним таблица смещений
+    private static final int COUNT_OFFSET = 8;
+    private static final int TABLE_OFFSET = 12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void writePack() throws IOException {
+        file = new File(folder.getRoot(), "levels.pack");
+        LevelPack.write(file, new BacktrackerGenerator(), COLS, ROWS, SEEDS);
+    }
+
+    @Test
+    public void levelsMatchTheirSeeds() throws IOException {
+        LevelPack pack = LevelPack.open(file);
+        assertEquals(SEEDS.length, pack.size());
+        MazeGenerator generator = new BacktrackerGenerator();
+        for(int i = 0; i < SEEDS.length; i++) {
+            MazeFormat.Header header = pack.getHeader(i);
+            assertEquals(COLS, header.getCols());
+            assertEquals(ROWS, header.getRows());
+            assertEquals(SEEDS[i], header.getSeed());
+
+            ByteBuffer level = pack.getLevel(i);
+            MazeFormat.readHeader(level);
+            MazeGrid decoded = new MazeGrid(COLS, ROWS);
+            MazeFormat.readCells(level, decoded);
+
+            MazeGrid expected = new MazeGrid(COLS, ROWS);
+            generator.setSeed(SEEDS[i]);
+            generator.generate(expected);
+            assertSameWalls(expected, decoded);
+        }
+        assertFalse("temporary file is left behind", new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsLevelOutOfRange() throws IOException {
+        LevelPack.open(file).getLevel(SEEDS.length);
+    }
+
+    @Test
+    public void rejectsBadMagicAndCount() throws IOException {
+        patchInt(0, 0);
+        assertOpenRejected();
+
+        writePack();
+        patchInt(COUNT_OFFSET, Integer.MAX_VALUE);
+        assertOpenRejected();
+
+        writePack();
+        patchInt(COUNT_OFFSET, -1);
+        assertOpenRejected();
+
+        // пустой файл и файл, оборванный внутри заголовка
+        for(int length : new int[] { 0, COUNT_OFFSET + 2 }) {
+            writePack();
+            try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+            assertOpenRejected();
+        }
+    }
+
+    @Test
+    public void rejectsBadOffsets() throws IOException {
+        // начало внутри таблицы, конец раньше начала, конец за концом файла
+        int[][] offsets = { { 0, 100 }, { 200, 150 }, { TABLE_OFFSET + 4 * (SEEDS.length + 1), Integer.MAX_VALUE } };
+        for(int[] range : offsets) {
+            writePack();
+            patchInt(TABLE_OFFSET, range[0]);
+            patchInt(TABLE_OFFSET + 4, range[1]);
+            LevelPack pack = LevelPack.open(file);
+            try {
+                pack.getLevel(0);
+                fail("bad offsets " + range[0] + ".." + range[1] + " were accepted");
+            }
+            catch(IllegalArgumentException expected) { }
+            // уровни за испорченными смещениями по-прежнему читаются
+            assertEquals(SEEDS[2], pack.getHeader(2).getSeed());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedLevel() throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        // последний уровень заканчивается за концом файла
+        LevelPack.open(file).getLevel(SEEDS.length - 1);
+    }
+
+    private void patchInt(long offset, int value) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset);
+            raf.writeInt(value);
+        }
+    }
+
+    private void assertOpenRejected() throws IOException {
+        try {
+            LevelPack.open(file);
+            fail("corrupt level pack was opened");
+        }
+        catch(IllegalArgumentException expected) { }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mazegame.core.io;
+
+import static com.example.mazegame.core.MazeAssert.assertSameWalls;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.KruskalGenerator;
+import com.example.mazegame.core.generation.MazeGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MazeFormatTest {
+
+    // смещения полей заголовка
+    private static final int VERSION_OFFSET = 4;
+    private static final int COLS_OFFSET = 8;
+    private static final int ROWS_OFFSET = 12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripThroughBuffer() {
+        // размеры, при которых последний байт ячеек заполнен не целиком
+        int[][] sizes = { { 1, 1 }, { 3, 1 }, { 5, 3 }, { 40, 25 } };
+        for(int[] size : sizes) {
+            MazeGrid grid = generate(size[0], size[1], 123L);
+            ByteBuffer buffer = encode(grid, 123L);
+            assertEquals(MazeFormat.encodedSize(size[0], size[1]), buffer.remaining());
+
+            MazeFormat.Header header = MazeFormat.readHeader(buffer);
+            assertEquals(size[0], header.getCols());
+            assertEquals(size[1], header.getRows());
+            assertEquals(123L, header.getSeed());
+            MazeGrid decoded = new MazeGrid(header.getCols(), header.getRows());
+            MazeFormat.readCells(buffer, decoded);
+            assertSameWalls(grid, decoded);
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void roundTripThroughFile() throws IOException {
+        MazeGrid grid = generate(33, 17, -5L);
+        File file = folder.newFile("maze.bin");
+        MazeFormat.save(file, grid, -5L);
+
+        ByteBuffer buffer = MazeFormat.load(file);
+        MazeFormat.Header header = MazeFormat.readHeader(buffer);
+        assertEquals(-5L, header.getSeed());
+        MazeGrid decoded = new MazeGrid(header.getCols(), header.getRows());
+        MazeFormat.readCells(buffer, decoded);
+        assertSameWalls(grid, decoded);
+    }
+
+    @Test
+    public void rejectsWrongMagicAndVersion() {
+        ByteBuffer buffer = encode(generate(4, 4, 1L), 1L);
+        buffer.putInt(0, 0x12345678);
+        assertRejected(buffer);
+
+        buffer = encode(generate(4, 4, 1L), 1L);
+        buffer.putShort(VERSION_OFFSET, (short) 99);
+        assertRejected(buffer);
+    }
+
+    @Test
+    public void rejectsTruncatedData() {
+        ByteBuffer buffer = encode(generate(10, 10, 1L), 1L);
+        buffer.limit(MazeFormat.HEADER_BYTES - 1);
+        assertRejected(buffer);
+
+        buffer = encode(generate(10, 10, 1L), 1L);
+        buffer.limit(buffer.limit() - 1);
+        assertRejected(buffer);
+    }
+
+    @Test
+    public void rejectsBadSizes() {
+        int[][] sizes = { { 0, 10 }, { 10, -1 }, { MazeFormat.MAX_CELLS, 2 }, { Integer.MAX_VALUE, Integer.MAX_VALUE } };
+        for(int[] size : sizes) {
+            ByteBuffer buffer = encode(generate(10, 10, 1L), 1L);
+            buffer.putInt(COLS_OFFSET, size[0]);
+            buffer.putInt(ROWS_OFFSET, size[1]);
+            assertRejected(buffer);
+        }
+    }
+
+    @Test
+    public void rejectsOpenOuterWall() {
+        // 1 x 1: обе стены ячейки внешние, нулевые биты означали бы проходы наружу
+        ByteBuffer buffer = encode(new MazeGrid(1, 1), 1L);
+        buffer.put(MazeFormat.HEADER_BYTES, (byte) 0);
+        assertRejected(buffer);
+    }
+
+    private static MazeGrid generate(int cols, int rows, long seed) {
+        MazeGenerator generator = new KruskalGenerator();
+        MazeGrid grid = new MazeGrid(cols, rows);
+        generator.setSeed(seed);
+        generator.generate(grid);
+        return grid;
+    }
+
+    private static ByteBuffer encode(MazeGrid grid, long seed) {
+        ByteBuffer buffer = ByteBuffer.allocate(MazeFormat.encodedSize(grid.getCols(), grid.getRows()));
+        MazeFormat.write(buffer, grid, seed);
+        buffer.flip();
+        return buffer;
+    }
+
+    /** Испорченные данные - IllegalArgumentException из readHeader или readCells, а не что-то другое. */
+    private static void assertRejected(ByteBuffer buffer) {
+        try {
+            MazeFormat.Header header = MazeFormat.readHeader(buffer);
+            MazeFormat.readCells(buffer, new MazeGrid(header.getCols(), header.getRows()));
+            fail("corrupt maze was accepted");
+        }
+        catch(IllegalArgumentException expected) { }
+    }
+}
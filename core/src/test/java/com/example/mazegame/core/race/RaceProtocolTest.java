@@ -0,0 +1,301 @@
+package com.example.mazegame.core.race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.mazegame.core.geometry.FixedPoint;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Протокол гонки через loopback: настоящий RaceServer и RaceClient, а кадры с нарушениями
+ * шлются в обход клиента и сервера обычными сокетами.
+ */
+public class RaceProtocolTest {
+
+    private static final int COLS = 8, ROWS = 6, CELL_SIZE = 40, WALL_THICKNESS = 4;
+    private static final float PLAYER_SIZE = 18f;
+    private static final long SEED = 42L;
+    private static final long TIMEOUT_MILLIS = 5000;
+    // больше 32 КБ абсолютных записей в одном TICK: буфер кадра растет до MAX_FRAME
+    private static final int CROWD = 3100;
+    private static final long CROWD_TIMEOUT_MILLIS = 120_000;
+
+    private RaceServer server;
+    private Thread serverThread;
+    private ServerSocket fakeServer;
+    private RaceClient first, second;
+
+    @After
+    public void close() throws Exception {
+        if(first != null) first.close();
+        if(second != null) second.close();
+        if(fakeServer != null) fakeServer.close();
+        if(server != null) {
+            server.close();
+            serverThread.join(TIMEOUT_MILLIS);
+        }
+    }
+
+    @Test
+    public void welcomeDescribesServerMaze() throws Exception {
+        startServer();
+        first = connect();
+        second = connect();
+
+        assertNotEquals(first.getPlayerId(), second.getPlayerId());
+        for(RaceClient client : new RaceClient[] { first, second }) {
+            assertEquals("kruskal", client.getGeneratorName());
+            assertEquals(server.getMaze().getCols(), client.getCols());
+            assertEquals(server.getMaze().getRows(), client.getRows());
+            assertEquals(server.getMaze().getSeed(), client.getSeed());
+            assertEquals(CELL_SIZE, client.getCellSize());
+            assertEquals(WALL_THICKNESS, client.getWallThickness());
+            assertEquals(PLAYER_SIZE, client.getPlayerSize(), 0f);
+        }
+        // второй в снимке видит первого и себя
+        assertEquals(2, second.getPlayerCount());
+        assertTrue(second.hasPlayer(first.getPlayerId()));
+        assertEquals(CELL_SIZE / 2f, second.getPlayerX(first.getPlayerId()), 0f);
+    }
+
+    @Test
+    public void moveReachesOtherClient() throws Exception {
+        startServer();
+        first = connect();
+        second = connect();
+
+        // сдвиг на 2 пикселя внутри стартовой ячейки - стен на пути нет
+        float x = CELL_SIZE / 2f + 2, y = CELL_SIZE / 2f;
+        first.move(new float[] { x, y }, 1);
+        flush(first);
+
+        int id = first.getPlayerId();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(second.getPlayerX(id) != x) {
+            assertTrue("no tick with the move", System.currentTimeMillis() < deadline);
+            assertTrue(second.poll());
+            Thread.sleep(5);
+        }
+        assertEquals(y, second.getPlayerY(id), 0f);
+        assertEquals(0, second.getPlayerFlags(id) & RaceProtocol.FLAG_CRASHED);
+    }
+
+    @Test
+    public void tickCarriesThousandsOfPlayers() throws Exception {
+        // TICK'и по таймеру не придут: первый запрашиваем, когда войдут все, и все попадут в один кадр
+        startServer((int) (2 * CROWD_TIMEOUT_MILLIS));
+        final int[] tickPlayers = new int[1];
+        first = connect(new RaceClient.Listener() {
+            @Override
+            public void onWelcome(RaceClient client) { }
+
+            @Override
+            public void onTick(RaceClient client) {
+                if(tickPlayers[0] == 0) tickPlayers[0] = client.getPlayerCount();
+            }
+        });
+
+        Socket[] crowd = new Socket[CROWD];
+        try {
+            ByteBuffer hello = ByteBuffer.allocate(8);
+            int start = RaceProtocol.begin(hello, RaceProtocol.HELLO);
+            hello.put((byte) RaceProtocol.VERSION);
+            RaceProtocol.end(hello, start);
+            for(int i = 0; i < CROWD; i++) {
+                crowd[i] = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                send(crowd[i], hello);
+            }
+            long deadline = System.currentTimeMillis() + CROWD_TIMEOUT_MILLIS;
+            while(server.getPlayerCount() < CROWD + 1) {
+                assertTrue("players did not join", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+
+            server.requestTick();
+            deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while(tickPlayers[0] == 0) {
+                assertTrue("no tick", System.currentTimeMillis() < deadline);
+                assertTrue("server dropped the client", first.poll());
+                Thread.sleep(5);
+            }
+            assertEquals(CROWD + 1, tickPlayers[0]);
+            assertTrue(serverThread.isAlive());
+        }
+        finally {
+            for(Socket socket : crowd)
+                if(socket != null) socket.close();
+        }
+    }
+
+    @Test
+    public void serverFailsOnBusyPort() throws Exception {
+        startServer();
+        try {
+            new RaceServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()),
+                COLS, ROWS, CELL_SIZE, WALL_THICKNESS, PLAYER_SIZE, "kruskal", SEED);
+            fail("port is busy");
+        }
+        catch(IOException expected) { }
+        // первый сервер работает как прежде
+        first = connect();
+    }
+
+    @Test
+    public void serverDropsMoveLongerThanFrame() throws Exception {
+        startServer();
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout((int) TIMEOUT_MILLIS);
+            ByteBuffer out = ByteBuffer.allocate(64);
+            int start = RaceProtocol.begin(out, RaceProtocol.HELLO);
+            out.put((byte) RaceProtocol.VERSION);
+            RaceProtocol.end(out, start);
+            // заявлено 5 точек, а в кадре нет ни одной
+            start = RaceProtocol.begin(out, RaceProtocol.MOVE);
+            out.put((byte) 5);
+            RaceProtocol.end(out, start);
+            send(socket, out);
+
+            // сервер успевает прислать WELCOME и SNAPSHOT, а затем закрывает соединение
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            while(in.read(buffer) >= 0) { }
+        }
+    }
+
+    @Test
+    public void clientRejectsPlayerIdOutOfRange() throws Exception {
+        ByteBuffer tick = ByteBuffer.allocate(64);
+        int start = RaceProtocol.begin(tick, RaceProtocol.TICK);
+        tick.putShort((short) 1);
+        tick.putShort((short) RaceProtocol.MAX_PLAYERS);
+        tick.put((byte) 0);
+        tick.putInt(0);
+        RaceProtocol.end(tick, start);
+        assertPollFails(tick);
+    }
+
+    @Test
+    public void clientRejectsTickLongerThanFrame() throws Exception {
+        // заявлены 2 записи, а в кадре одна
+        ByteBuffer tick = ByteBuffer.allocate(64);
+        int start = RaceProtocol.begin(tick, RaceProtocol.TICK);
+        tick.putShort((short) 2);
+        tick.putShort((short) 0);
+        tick.put((byte) 0);
+        tick.putInt(0);
+        RaceProtocol.end(tick, start);
+        assertPollFails(tick);
+    }
+
+    //region ******************* HELPERS ***********************************************************
+
+    private void startServer() throws IOException {
+        startServer(RaceServer.TICK_MILLIS);
+    }
+
+    private void startServer(int tickMillis) throws IOException {
+        server = new RaceServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            COLS, ROWS, CELL_SIZE, WALL_THICKNESS, PLAYER_SIZE, "kruskal", SEED, tickMillis);
+        serverThread = new Thread(server, "race-server");
+        serverThread.start();
+    }
+
+    private RaceClient connect() throws Exception {
+        return connect(new RaceClient.Listener() {
+            @Override
+            public void onWelcome(RaceClient client) { }
+
+            @Override
+            public void onTick(RaceClient client) { }
+        });
+    }
+
+    /** Подключает клиента и ждет WELCOME со SNAPSHOT. */
+    private RaceClient connect(RaceClient.Listener listener) throws Exception {
+        RaceClient client = new RaceClient(listener);
+        client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+        flush(client);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(client.getPlayerCount() == 0) {
+            assertTrue("no welcome", System.currentTimeMillis() < deadline);
+            assertTrue(client.poll());
+            Thread.sleep(5);
+        }
+        return client;
+    }
+
+    private static void flush(RaceClient client) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(!client.flush()) {
+            assertTrue("moves are not sent", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /** Поддельный сервер шлет правильные WELCOME и SNAPSHOT, затем tick; poll должен бросить IOException. */
+    private void assertPollFails(ByteBuffer tick) throws Exception {
+        fakeServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        first = new RaceClient(new RaceClient.Listener() {
+            @Override
+            public void onWelcome(RaceClient client) { }
+
+            @Override
+            public void onTick(RaceClient client) { }
+        });
+        first.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), fakeServer.getLocalPort()));
+
+        try(Socket socket = fakeServer.accept()) {
+            byte[] name = "kruskal".getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer out = ByteBuffer.allocate(256);
+            int start = RaceProtocol.begin(out, RaceProtocol.WELCOME);
+            out.putShort((short) 0);
+            out.putInt(COLS);
+            out.putInt(ROWS);
+            out.putLong(SEED);
+            out.putInt(CELL_SIZE);
+            out.putInt(WALL_THICKNESS);
+            out.putInt(FixedPoint.toFixed(PLAYER_SIZE));
+            out.put((byte) name.length);
+            out.put(name);
+            RaceProtocol.end(out, start);
+            start = RaceProtocol.begin(out, RaceProtocol.SNAPSHOT);
+            out.putShort((short) 0);
+            RaceProtocol.end(out, start);
+            tick.flip();
+            out.put(tick);
+            send(socket, out);
+
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            try {
+                while(System.currentTimeMillis() < deadline) {
+                    first.poll();
+                    Thread.sleep(5);
+                }
+                fail("corrupt tick accepted");
+            }
+            catch(IOException expected) { }
+            assertEquals("kruskal", first.getGeneratorName());
+        }
+    }
+
+    private static void send(Socket socket, ByteBuffer out) throws IOException {
+        OutputStream stream = socket.getOutputStream();
+        stream.write(out.array(), 0, out.position());
+        stream.flush();
+    }
+
+    //endregion HELPERS
+}
@@ -0,0 +1,129 @@
+package com.example.mazegame.core.solving;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.mazegame.core.MazeGrid;
+import com.example.mazegame.core.generation.MazeGenerator;
+import com.example.mazegame.core.generation.MazeGenerators;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/** Расстояния и пути MazeSolver против простого поиска в ширину по всем ячейкам. */
+public class MazeSolverTest {
+
+    private static final String[] NAMES = {
+        "backtracker", "eller", "kruskal", "wilson", "binary-tree", "sidewinder", "tiled"
+    };
+
+    private final Random random = new Random(1);
+    // один решатель на все проверки: его буферы переиспользуются между сетками разного размера
+    private final MazeSolver solver = new MazeSolver();
+
+    @Test
+    public void perfectMazesMatchBreadthFirstSearch() {
+        for(String name : NAMES)
+            for(int i = 0; i < 10; i++) check(generate(name, i));
+    }
+
+    /** Лишние проходы дают циклы: решатель должен заметить их и пересчитать расстояния. */
+    @Test
+    public void mazesWithCyclesMatchBreadthFirstSearch() {
+        for(String name : NAMES)
+            for(int i = 0; i < 10; i++) {
+                MazeGrid grid = generate(name, i);
+                carveRandom(grid, 20);
+                check(grid);
+            }
+    }
+
+    /** Почти все стены на месте: большая часть ячеек недостижима. */
+    @Test
+    public void unreachableCellsAreMarked() {
+        for(int i = 0; i < 20; i++) {
+            MazeGrid grid = new MazeGrid(1 + random.nextInt(40), 1 + random.nextInt(40));
+            carveRandom(grid, grid.size() / 2);
+            check(grid);
+        }
+    }
+
+    @Test
+    public void pathLengthInCorridor() {
+        MazeGrid grid = new MazeGrid(10, 1);
+        for(int cell = 0; cell < 9; cell++) grid.carve(cell, MazeGrid.DIR_RIGHT);
+        solver.solve(grid, 0);
+        assertEquals(9, solver.getFarthestCell());
+        assertEquals(10, solver.findPath(grid, 9));
+        for(int i = 0; i < 10; i++) assertEquals(i, solver.getPath()[i]);
+    }
+
+    private void check(MazeGrid grid) {
+        int start = random.nextInt(grid.size());
+        solver.solve(grid, start);
+        int[] expected = breadthFirst(grid, start);
+
+        int reached = 0, farthest = 0;
+        for(int cell = 0; cell < grid.size(); cell++) {
+            int distance = expected[cell] < 0 ? MazeSolver.UNREACHABLE : expected[cell];
+            assertEquals("distance to " + cell, distance, solver.getDistance(cell));
+            if(expected[cell] >= 0) reached++;
+            farthest = Math.max(farthest, expected[cell]);
+        }
+        assertEquals(reached, solver.getReachedCount());
+        assertEquals(farthest, expected[solver.getFarthestCell()]);
+
+        int target = random.nextInt(grid.size());
+        int length = solver.findPath(grid, target);
+        if(expected[target] < 0) {
+            assertEquals(0, length);
+            return;
+        }
+        assertEquals(expected[target] + 1, length);
+        int[] path = solver.getPath();
+        assertEquals(start, path[0]);
+        assertEquals(target, path[length - 1]);
+        for(int i = 1; i < length; i++) assertTrue("step " + i, isPassage(grid, path[i - 1], path[i]));
+    }
+
+    private MazeGrid generate(String name, long seed) {
+        MazeGrid grid = new MazeGrid(1 + random.nextInt(60), 1 + random.nextInt(60));
+        MazeGenerator generator = MazeGenerators.create(name);
+        generator.setSeed(seed);
+        generator.generate(grid);
+        return grid;
+    }
+
+    private void carveRandom(MazeGrid grid, int count) {
+        for(int i = 0; i < count; i++) {
+            int cell = random.nextInt(grid.size()), dir = random.nextInt(4);
+            if(grid.hasNeighbour(cell, dir)) grid.carve(cell, dir);
+        }
+    }
+
+    private static boolean isPassage(MazeGrid grid, int from, int to) {
+        for(int dir = 0; dir < 4; dir++)
+            if(!grid.hasWall(from, dir) && grid.neighbour(from, dir) == to) return true;
+        return false;
+    }
+
+    private static int[] breadthFirst(MazeGrid grid, int start) {
+        int[] distances = new int[grid.size()];
+        Arrays.fill(distances, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distances[start] = 0;
+        queue.add(start);
+        while(!queue.isEmpty()) {
+            int cell = queue.poll();
+            for(int dir = 0; dir < 4; dir++) {
+                if(grid.hasWall(cell, dir)) continue;
+                int next = grid.neighbour(cell, dir);
+                if(distances[next] >= 0) continue;
+                distances[next] = distances[cell] + 1;
+                queue.add(next);
+            }
+        }
+        return distances;
+    }
+}